@@ -0,0 +1,131 @@
+package com.example.main.publisher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.TransportConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+import jakarta.jms.Connection;
+import jakarta.jms.Session;
+
+/**
+ * Time to publish one relay batch of {@link #BATCH} persistent messages to an
+ * embedded broker over TCP, per transport: a connection per send (the old
+ * JmsTemplate on the raw factory), cached sessions with one synchronous send
+ * per message, one transacted batch, and async sends with an in-flight window.
+ * A consumer drains the queue so the broker never throttles the producer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublisherBenchmark {
+
+    private static final int BATCH = 100;
+    private static final String QUEUE = "outbox.bench";
+
+    private BrokerService broker;
+    private Connection drain;
+    private CachingConnectionFactory cached;
+    private JmsTemplate uncachedTemplate;
+    private JmsTemplate cachedTemplate;
+    private ActiveMqOutboxPublisher syncPublisher;
+    private List<String> payloads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName("outbox-bench");
+        broker.setDataDirectoryFile(new File("target/activemq-bench"));
+        broker.setDeleteAllMessagesOnStartup(true);
+        broker.setUseJmx(false);
+        TransportConnector connector = broker.addConnector("tcp://127.0.0.1:0");
+        broker.start();
+        broker.waitUntilStarted();
+
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(connector.getConnectUri());
+        drain = factory.createConnection();
+        Session session = drain.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session.createConsumer(session.createQueue(QUEUE)).setMessageListener(message -> { });
+        drain.start();
+
+        uncachedTemplate = new JmsTemplate(factory);
+        cached = new CachingConnectionFactory(factory);
+        cached.setSessionCacheSize(4);
+        cachedTemplate = new JmsTemplate(cached);
+        syncPublisher = new ActiveMqOutboxPublisher(cachedTemplate, QUEUE, false, 1, 30000);
+
+        payloads = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            payloads.add("{\"eventType\":\"ORDER_RECEIVED\",\"seq\":" + i + ",\"payload\":\"" + "x".repeat(400) + "\"}");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        cached.destroy();
+        drain.close();
+        broker.stop();
+        broker.waitUntilStopped();
+    }
+
+    @Benchmark
+    public void publishPerMessageUncached() {
+        for (String payload : payloads) {
+            uncachedTemplate.convertAndSend(QUEUE, payload);
+        }
+    }
+
+    @Benchmark
+    public void publishPerMessageCached() {
+        for (String payload : payloads) {
+            syncPublisher.publish(payload);
+        }
+    }
+
+    @Benchmark
+    public void publishBatchTransacted() {
+        syncPublisher.publishBatch(payloads);
+    }
+
+    @Benchmark
+    public void publishBatchAsync(AsyncWindow window) {
+        window.publisher.publishBatch(payloads);
+    }
+
+    /** The in-flight window only applies to async sends. */
+    @State(Scope.Benchmark)
+    public static class AsyncWindow {
+
+        @Param({"1", "16", "256"})
+        public int maxInFlight;
+
+        ActiveMqOutboxPublisher publisher;
+
+        @Setup(Level.Trial)
+        public void setUp(PublisherBenchmark benchmark) {
+            publisher = new ActiveMqOutboxPublisher(benchmark.cachedTemplate, QUEUE, true, maxInFlight, 30000);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.main.config;
 
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import javax.sql.DataSource;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -13,13 +18,33 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jms.connection.CachingConnectionFactory;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.example.main.core.GenericOutboxRepository;
+import com.example.main.core.MongoOutboxChangeListener;
 import com.example.main.core.MongoOutboxRepository;
+import com.example.main.core.MongoShardOwnership;
+import com.example.main.core.OutboxCircuitBreaker;
+import com.example.main.core.OutboxHealthIndicator;
+import com.example.main.core.OutboxLagMonitor;
 import com.example.main.core.OutboxMessagePublisher;
+import com.example.main.core.OutboxMetrics;
+import com.example.main.core.OutboxPoller;
 import com.example.main.core.OutboxProcessor;
+import com.example.main.core.OutboxShardOwnership;
+import com.example.main.core.OutboxSpool;
+import com.example.main.core.OutboxTableMaintenance;
+import com.example.main.core.OutboxWriter;
+import com.example.main.core.PostgresOutboxListener;
+import com.example.main.core.PostgresShardOwnership;
+import com.example.main.listener.OutboxMessageTap;
+import com.example.main.listener.OutboxTapEndpoint;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @Configuration
 @EnableConfigurationProperties(OutboxProperties.class)
@@ -37,10 +62,90 @@ public class OutboxAutoConfig {
         return f;
     }
 
+    /**
+     * The relay's connection: one broker connection with cached sessions and
+     * producers, instead of a connection per send. Not an autowire candidate,
+     * so JMS listeners keep using the plain ActiveMQ factory.
+     */
+    @Bean(autowireCandidate = false)
+    public CachingConnectionFactory outboxConnectionFactory(ActiveMQConnectionFactory factory, OutboxProperties props) {
+        CachingConnectionFactory cached = new CachingConnectionFactory(factory);
+        // one session per concurrently publishing worker, plus the transacted batch sessions
+        cached.setSessionCacheSize(Math.max(props.getJmsSessionCacheSize(), props.getWorkers()));
+        cached.setReconnectOnException(true);
+        return cached;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public JmsTemplate jmsTemplate(ActiveMQConnectionFactory factory, OutboxProperties props) {
+        return new JmsTemplate(outboxConnectionFactory(factory, props));
+    }
+
     @Bean
     @ConditionalOnMissingBean
-    public JmsTemplate jmsTemplate(ActiveMQConnectionFactory factory) {
-        return new JmsTemplate(factory);
+    public OutboxMetrics outboxMetrics(ObjectProvider<MeterRegistry> meterRegistry, OutboxProperties props) {
+        return new OutboxMetrics(meterRegistry.getIfAvailable(SimpleMeterRegistry::new), props);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboxPoller outboxPoller(OutboxProcessor processor, OutboxProperties props, OutboxMetrics metrics,
+                                     ObjectProvider<OutboxShardOwnership> shards) {
+        return new OutboxPoller(processor, props, metrics, shards.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "outbox.circuit-breaker-enabled", havingValue = "true", matchIfMissing = true)
+    public OutboxCircuitBreaker outboxCircuitBreaker(OutboxProperties props, OutboxMetrics metrics) {
+        return new OutboxCircuitBreaker(props.getBreakerFailureThreshold(), props.getBreakerOpenMs(),
+                props.getBreakerOpenMaxMs(), metrics);
+    }
+
+    /** Replays whatever a previous run left in the spool once the relay polls. */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "outbox.spool-enabled", havingValue = "true")
+    public OutboxSpool outboxSpool(OutboxProperties props, OutboxMetrics metrics) throws IOException {
+        if (props.getShards() > 0) {
+            // a spool is local to one relay; its records would replay after the shard's new owner sent later ones
+            throw new IllegalStateException("outbox.spool-enabled cannot be combined with outbox.shards ("
+                    + props.getShards() + "): spooled records would be replayed out of order after a shard handoff");
+        }
+        OutboxSpool spool = new OutboxSpool(Path.of(props.getSpoolDirectory(), props.getTableName()),
+                props.getSpoolMaxBytes());
+        metrics.registerSpool(spool);
+        return spool;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboxMessageTap outboxMessageTap(OutboxProperties props) {
+        return new OutboxMessageTap(props.getTapCapacity(), props.getTapSampleEvery(), props.getTapMaxPayloadChars());
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class OutboxTapEndpointConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxTapEndpoint outboxTapEndpoint(OutboxMessageTap tap) {
+            return new OutboxTapEndpoint(tap);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    static class OutboxHealthConfig {
+
+        /** Shows up as "outbox" under /actuator/health. */
+        @Bean(name = "outboxHealthIndicator")
+        @ConditionalOnMissingBean(name = "outboxHealthIndicator")
+        public OutboxHealthIndicator outboxHealthIndicator(OutboxMetrics metrics, OutboxProperties props) {
+            return new OutboxHealthIndicator(metrics, props);
+        }
     }
 
     @Configuration
@@ -51,15 +156,73 @@ public class OutboxAutoConfig {
         @Bean
         @ConditionalOnMissingBean
         public GenericOutboxRepository genericOutboxRepository(DataSource ds, OutboxProperties props) {
-            return new GenericOutboxRepository(new JdbcTemplate(ds), props.getTableName());
+            return new GenericOutboxRepository(new JdbcTemplate(ds), props);
+        }
+
+        /** For producers: appends outbox rows in the caller's transaction. */
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxWriter outboxWriter(GenericOutboxRepository repo, OutboxProperties props) {
+            return new OutboxWriter(repo, null, props);
         }
 
         @Bean
         @ConditionalOnMissingBean
         public OutboxProcessor outboxProcessor(GenericOutboxRepository repo,
                                               OutboxMessagePublisher publisher,
-                                              OutboxProperties props) {
-            return new OutboxProcessor(repo, null, publisher, props);
+                                              OutboxProperties props,
+                                              ObjectProvider<PlatformTransactionManager> transactionManager,
+                                              OutboxMetrics metrics,
+                                              ObjectProvider<OutboxCircuitBreaker> breaker,
+                                              ObjectProvider<OutboxSpool> spool) {
+            return new OutboxProcessor(repo, publisher, props, transactionManager.getIfUnique(), metrics,
+                    breaker.getIfAvailable(), spool.getIfAvailable());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxTableMaintenance outboxTableMaintenance(GenericOutboxRepository repo,
+                                                            OutboxProperties props,
+                                                            OutboxMetrics metrics) {
+            return new OutboxTableMaintenance(repo, props, metrics);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxLagMonitor outboxLagMonitor(GenericOutboxRepository repo,
+                                                 OutboxProperties props,
+                                                 OutboxMetrics metrics) {
+            return new OutboxLagMonitor(repo, props, metrics);
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "org.postgresql.PGConnection")
+        @ConditionalOnProperty(name = "outbox.listen-notify", havingValue = "true")
+        static class PostgresNotifyConfig {
+
+            @Bean
+            @ConditionalOnMissingBean
+            public PostgresOutboxListener postgresOutboxListener(DataSource ds,
+                                                                 GenericOutboxRepository repo,
+                                                                 OutboxPoller poller,
+                                                                 OutboxProperties props,
+                                                                 OutboxMetrics metrics) {
+                return new PostgresOutboxListener(ds, repo, poller, props, metrics);
+            }
+        }
+
+        @Configuration
+        @ConditionalOnExpression("${outbox.shards:0} > 0")
+        static class PostgresShardConfig {
+
+            @Bean
+            @ConditionalOnMissingBean
+            public OutboxShardOwnership outboxShardOwnership(DataSource ds,
+                                                             GenericOutboxRepository repo,
+                                                             OutboxProperties props,
+                                                             OutboxMetrics metrics) {
+                return new PostgresShardOwnership(ds, repo, props, metrics);
+            }
         }
     }
 
@@ -71,15 +234,68 @@ public class OutboxAutoConfig {
         @Bean
         @ConditionalOnMissingBean
         public MongoOutboxRepository mongoOutboxRepository(MongoTemplate mongoTemplate, OutboxProperties props) {
-            return new MongoOutboxRepository(mongoTemplate, props.getTableName());
+            return new MongoOutboxRepository(mongoTemplate, props);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxWriter outboxWriter(MongoOutboxRepository repo, OutboxProperties props) {
+            return new OutboxWriter(null, repo, props);
         }
 
         @Bean
         @ConditionalOnMissingBean
         public OutboxProcessor outboxProcessor(MongoOutboxRepository repo,
                                               OutboxMessagePublisher publisher,
-                                              OutboxProperties props) {
-            return new OutboxProcessor(null, repo, publisher, props);
+                                              OutboxProperties props,
+                                              OutboxMetrics metrics,
+                                              ObjectProvider<OutboxCircuitBreaker> breaker,
+                                              ObjectProvider<OutboxSpool> spool) {
+            return new OutboxProcessor(repo, publisher, props, null, metrics,
+                    breaker.getIfAvailable(), spool.getIfAvailable());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxTableMaintenance outboxTableMaintenance(MongoOutboxRepository repo,
+                                                            OutboxProperties props,
+                                                            OutboxMetrics metrics) {
+            return new OutboxTableMaintenance(repo, props, metrics);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public OutboxLagMonitor outboxLagMonitor(MongoOutboxRepository repo,
+                                                 OutboxProperties props,
+                                                 OutboxMetrics metrics) {
+            return new OutboxLagMonitor(repo, props, metrics);
+        }
+
+        @Configuration
+        @ConditionalOnProperty(name = "outbox.mongo-change-stream", havingValue = "true")
+        static class MongoChangeStreamConfig {
+
+            @Bean
+            @ConditionalOnMissingBean
+            public MongoOutboxChangeListener mongoOutboxChangeListener(MongoTemplate mongoTemplate,
+                                                                       OutboxPoller poller,
+                                                                       OutboxProperties props,
+                                                                       OutboxMetrics metrics) {
+                return new MongoOutboxChangeListener(mongoTemplate, poller, props, metrics);
+            }
+        }
+
+        @Configuration
+        @ConditionalOnExpression("${outbox.shards:0} > 0")
+        static class MongoShardConfig {
+
+            @Bean
+            @ConditionalOnMissingBean
+            public OutboxShardOwnership outboxShardOwnership(MongoTemplate mongoTemplate,
+                                                             OutboxProperties props,
+                                                             OutboxMetrics metrics) {
+                return new MongoShardOwnership(mongoTemplate, props, metrics);
+            }
         }
     }
 }
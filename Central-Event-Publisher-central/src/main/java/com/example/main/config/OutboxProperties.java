@@ -1,6 +1,7 @@
 package com.example.main.config;
 
 
+import java.util.UUID;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -16,12 +17,164 @@ public class OutboxProperties {
     /** Database type: JDBC or MONGODB */
     private DatabaseType databaseType = DatabaseType.JDBC;
 
-    /** polling interval in ms */
-    private long pollingIntervalMs = 3000L;
+    /**
+     * Adaptive polling: while polls find work the relay polls again at once;
+     * empty polls back off from minPollingIntervalMs, multiplying by
+     * pollingBackoffMultiplier up to maxPollingIntervalMs, each delay spread by
+     * +/- pollingJitter (a fraction).
+     */
+    private long minPollingIntervalMs = 100L;
+    private long maxPollingIntervalMs = 30000L;
+    private double pollingBackoffMultiplier = 2.0;
+    private double pollingJitter = 0.2;
+
+    /**
+     * Rows claimed and published per round trip. 1 keeps the original one-row
+     * mode; above 1 a batch is claimed, published in one JMS transaction and
+     * marked sent with one UPDATE, repeating while batches come back full.
+     */
+    private int batchSize = 1;
+
+    /**
+     * JDBC only: poll with this many workers, each claiming only the rows
+     * whose orderingKeyColumn hashes to its partition, so records sharing a
+     * key keep their order (by orderColumn, then id) and other keys run in
+     * parallel. Ordering holds per relay instance; across several instances
+     * it needs shard ownership (shards).
+     */
+    private int workers = 1;
+    private String orderingKeyColumn;
+    private String orderColumn;
+
+    /**
+     * Shard ownership across relay instances: with shards above 0 the outbox
+     * is split into that many hash partitions (ordering key for JDBC,
+     * partition key or else ordering key for MongoDB, id for records without
+     * one) and each relay polls only those it owns, about
+     * shards / relays of them, with workers sharing its shards. Ownership is
+     * held with PostgreSQL advisory locks or MongoDB leases of shardLeaseMs
+     * and rebalanced every shardRebalanceIntervalMs as relays come and go.
+     */
+    private int shards = 0;
+    private long shardRebalanceIntervalMs = 2000L;
+    private long shardLeaseMs = 10000L;
+
+    /**
+     * PostgreSQL only: keep a connection LISTENing on notifyChannel and drain
+     * as soon as a notification arrives; polling stays on as a safety net.
+     * Notifications come from the optional trigger (notifyInstallTrigger) or
+     * from the writer calling GenericOutboxRepository.notifyPending().
+     */
+    private boolean listenNotify = false;
+    /** defaults to "<tableName>_pending" */
+    private String notifyChannel;
+    private boolean notifyInstallTrigger = false;
+
+    /**
+     * MongoDB: claims lease documents to relayId for claimLeaseMs so several
+     * relays can share a collection; leases left by a dead relay expire and
+     * are reclaimed. relayId defaults to a random id per process.
+     */
+    private String relayId;
+    private long claimLeaseMs = 60000L;
+    /** MongoDB replica sets only: wake the relay from a change stream */
+    private boolean mongoChangeStream = false;
+
+    /**
+     * Above 0, a failed publish is recorded on the row instead of retrying it
+     * on the next poll: attempts is incremented, last_error kept and
+     * next_attempt_at pushed out by retryBackoffMs doubling per attempt up to
+     * retryBackoffMaxMs; claims skip rows that are not due. After maxAttempts
+     * the row is parked in failedStatus. Needs the columns
+     * attempts (int, default 0), next_attempt_at (timestamp) and last_error (text):
+     * createRetryColumns adds the missing ones at startup, otherwise their DDL
+     * is logged.
+     */
+    private int maxAttempts = 0;
+    private long retryBackoffMs = 1000L;
+    private long retryBackoffMaxMs = 300000L;
+    private boolean createRetryColumns = false;
+
+    /**
+     * Table lifecycle. sentAtColumn is stamped when rows are marked sent (Mongo
+     * always stamps sentAt). createPendingIndex creates the partial index on
+     * pending rows at startup; otherwise the recommended DDL is logged. With
+     * purgeEnabled a background job removes sent rows older than
+     * purgeRetentionMs every purgeIntervalMs, at most purgeBatchSize rows per
+     * statement: DELETE drops them, ARCHIVE moves them to archiveTableName,
+     * PARTITION drops whole daily partitions of a table range-partitioned on
+     * its creation time and creates partitionPremakeDays of them ahead.
+     */
+    private String sentAtColumn;
+    private boolean createPendingIndex = false;
+    private boolean purgeEnabled = false;
+    private PurgeMode purgeMode = PurgeMode.DELETE;
+    private long purgeRetentionMs = 7 * 24 * 3600 * 1000L;
+    private long purgeIntervalMs = 60000L;
+    private int purgeBatchSize = 1000;
+    /** defaults to "<tableName>_archive" */
+    private String archiveTableName;
+    private int partitionPremakeDays = 3;
+
+    /**
+     * Backlog monitoring: every lagSampleIntervalMs the pending count and the
+     * age of the oldest pending record (by createdAtColumn; Mongo field of the
+     * same name) are sampled into gauges. The health indicator reports DOWN
+     * once that age exceeds healthMaxLagMs.
+     */
+    private String createdAtColumn;
+    private long lagSampleIntervalMs = 10000L;
+    private long healthMaxLagMs = 300000L;
+
+    /**
+     * Optional metadata columns (Mongo fields of the same names), read in the
+     * claim query and published as JMS properties eventType (also JMSType),
+     * source, aggregateId and createdAt (epoch millis), so consumers can
+     * route with selectors instead of parsing payloads. With messageGroups the
+     * value of partitionKeyColumn, or else of orderingKeyColumn, becomes the
+     * JMSXGroupID, keeping each key on one consumer at a time.
+     */
+    private String eventTypeColumn;
+    private String sourceColumn;
+    private String aggregateIdColumn;
+    private String partitionKeyColumn;
+    private boolean messageGroups = true;
+
+    /**
+     * GenericJmsListener keeps every tapSampleEvery-th received event, up to
+     * tapCapacity of them with payloads cut to tapMaxPayloadChars, alongside
+     * counters; see /actuator/outboxtap.
+     */
+    private int tapCapacity = 100;
+    private int tapSampleEvery = 1;
+    private int tapMaxPayloadChars = 2048;
 
     /** status values used by outbox (optional overrides) */
     private String pendingStatus = "PENDING";
     private String sentStatus = "SENT";
+    private String failedStatus = "FAILED";
+    private String spooledStatus = "SPOOLED";
+
+    /**
+     * Circuit breaker around the broker: after breakerFailureThreshold failed
+     * publishes in a row the relay stops claiming for breakerOpenMs, then
+     * probes with a single record; each failed probe doubles the wait up to
+     * breakerOpenMaxMs. With spoolEnabled the batches in hand when it opens
+     * are written to spoolDirectory/<tableName> (at most spoolMaxBytes), marked
+     * spooledStatus and replayed before new claims once the broker is back.
+     * A spool belongs to one instance: if it is lost, reset its rows from
+     * spooledStatus to pendingStatus by hand. For the same reason it cannot be
+     * combined with shards, where another relay may take over a shard while
+     * its records sit in this one's spool. Only connection and transport
+     * failures count towards the breaker, not records the broker refuses.
+     */
+    private boolean circuitBreakerEnabled = true;
+    private int breakerFailureThreshold = 3;
+    private long breakerOpenMs = 1000L;
+    private long breakerOpenMaxMs = 30000L;
+    private boolean spoolEnabled = false;
+    private String spoolDirectory = "outbox-spool";
+    private long spoolMaxBytes = 256L * 1024 * 1024;
 
     /** ActiveMQ specific - provided by microservice via properties */
     private String brokerUrl;
@@ -29,22 +182,130 @@ public class OutboxProperties {
     private String password;
     private String queueName;
 
+    /**
+     * The relay publishes through one shared broker connection with up to
+     * jmsSessionCacheSize cached sessions and their producers. With asyncSend
+     * batches are sent without waiting per message, keeping up to
+     * maxInFlightSends unconfirmed and marking the batch sent only once all of
+     * them are confirmed; sendTimeoutMs bounds that wait.
+     */
+    private int jmsSessionCacheSize = 10;
+    private boolean asyncSend = false;
+    private int maxInFlightSends = 256;
+    private long sendTimeoutMs = 30000L;
+
+    /**
+     * With envelopeEnabled a claimed batch goes out as envelopes of up to
+     * envelopeMaxEvents events or envelopeMaxBytes of payload each, one JMS
+     * message per envelope (deflated unless envelopeCompression is off).
+     * Consumers must unpack them, see OutboxEnvelope.unpack.
+     */
+    private boolean envelopeEnabled = false;
+    private int envelopeMaxEvents = 100;
+    private int envelopeMaxBytes = 262144;
+    private boolean envelopeCompression = true;
+
+    /**
+     * OutboxWriter appends producer rows in the caller's transaction: up to
+     * writerInsertRows rows per multi-row INSERT, or a single COPY on
+     * PostgreSQL for batches of at least writerCopyThreshold rows (0 = never).
+     */
+    private int writerInsertRows = 500;
+    private int writerCopyThreshold = 1000;
+
     public enum DatabaseType {
         JDBC,
         MONGODB
     }
+
+    public enum PurgeMode {
+        DELETE,
+        ARCHIVE,
+        PARTITION
+    }
     
     // getters / setters
     public String getTableName() { return tableName; }
     public void setTableName(String tableName) { this.tableName = tableName; }
     public DatabaseType getDatabaseType() { return databaseType; }
     public void setDatabaseType(DatabaseType databaseType) { this.databaseType = databaseType; }
-    public long getPollingIntervalMs() { return pollingIntervalMs; }
-    public void setPollingIntervalMs(long pollingIntervalMs) { this.pollingIntervalMs = pollingIntervalMs; }
+    public long getMinPollingIntervalMs() { return minPollingIntervalMs; }
+    public void setMinPollingIntervalMs(long minPollingIntervalMs) { this.minPollingIntervalMs = minPollingIntervalMs; }
+    public long getMaxPollingIntervalMs() { return maxPollingIntervalMs; }
+    public void setMaxPollingIntervalMs(long maxPollingIntervalMs) { this.maxPollingIntervalMs = maxPollingIntervalMs; }
+    public double getPollingBackoffMultiplier() { return pollingBackoffMultiplier; }
+    public void setPollingBackoffMultiplier(double pollingBackoffMultiplier) { this.pollingBackoffMultiplier = pollingBackoffMultiplier; }
+    public double getPollingJitter() { return pollingJitter; }
+    public void setPollingJitter(double pollingJitter) { this.pollingJitter = pollingJitter; }
+
+    /** @deprecated the fixed interval is now the idle ceiling, use max-polling-interval-ms */
+    @Deprecated
+    public void setPollingIntervalMs(long pollingIntervalMs) { this.maxPollingIntervalMs = pollingIntervalMs; }
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    public int getWorkers() { return workers; }
+    public void setWorkers(int workers) { this.workers = workers; }
+    public String getOrderingKeyColumn() { return orderingKeyColumn; }
+    public void setOrderingKeyColumn(String orderingKeyColumn) { this.orderingKeyColumn = orderingKeyColumn; }
+    public String getOrderColumn() { return orderColumn; }
+    public void setOrderColumn(String orderColumn) { this.orderColumn = orderColumn; }
+    public boolean isListenNotify() { return listenNotify; }
+    public void setListenNotify(boolean listenNotify) { this.listenNotify = listenNotify; }
+    public String getNotifyChannel() {
+        return notifyChannel != null ? notifyChannel : tableName + "_pending";
+    }
+    public void setNotifyChannel(String notifyChannel) { this.notifyChannel = notifyChannel; }
+    public boolean isNotifyInstallTrigger() { return notifyInstallTrigger; }
+    public void setNotifyInstallTrigger(boolean notifyInstallTrigger) { this.notifyInstallTrigger = notifyInstallTrigger; }
+    public synchronized String getRelayId() {
+        if (relayId == null) relayId = UUID.randomUUID().toString();
+        return relayId;
+    }
+    public synchronized void setRelayId(String relayId) { this.relayId = relayId; }
+    public long getClaimLeaseMs() { return claimLeaseMs; }
+    public void setClaimLeaseMs(long claimLeaseMs) { this.claimLeaseMs = claimLeaseMs; }
+    public boolean isMongoChangeStream() { return mongoChangeStream; }
+    public void setMongoChangeStream(boolean mongoChangeStream) { this.mongoChangeStream = mongoChangeStream; }
+    public String getSentAtColumn() { return sentAtColumn; }
+    public void setSentAtColumn(String sentAtColumn) { this.sentAtColumn = sentAtColumn; }
+    public boolean isCreatePendingIndex() { return createPendingIndex; }
+    public void setCreatePendingIndex(boolean createPendingIndex) { this.createPendingIndex = createPendingIndex; }
+    public boolean isPurgeEnabled() { return purgeEnabled; }
+    public void setPurgeEnabled(boolean purgeEnabled) { this.purgeEnabled = purgeEnabled; }
+    public PurgeMode getPurgeMode() { return purgeMode; }
+    public void setPurgeMode(PurgeMode purgeMode) { this.purgeMode = purgeMode; }
+    public long getPurgeRetentionMs() { return purgeRetentionMs; }
+    public void setPurgeRetentionMs(long purgeRetentionMs) { this.purgeRetentionMs = purgeRetentionMs; }
+    public long getPurgeIntervalMs() { return purgeIntervalMs; }
+    public void setPurgeIntervalMs(long purgeIntervalMs) { this.purgeIntervalMs = purgeIntervalMs; }
+    public int getPurgeBatchSize() { return purgeBatchSize; }
+    public void setPurgeBatchSize(int purgeBatchSize) { this.purgeBatchSize = purgeBatchSize; }
+    public String getArchiveTableName() {
+        return archiveTableName != null ? archiveTableName : tableName + "_archive";
+    }
+    public void setArchiveTableName(String archiveTableName) { this.archiveTableName = archiveTableName; }
+    public int getPartitionPremakeDays() { return partitionPremakeDays; }
+    public void setPartitionPremakeDays(int partitionPremakeDays) { this.partitionPremakeDays = partitionPremakeDays; }
+    public String getCreatedAtColumn() { return createdAtColumn; }
+    public void setCreatedAtColumn(String createdAtColumn) { this.createdAtColumn = createdAtColumn; }
+    public long getLagSampleIntervalMs() { return lagSampleIntervalMs; }
+    public void setLagSampleIntervalMs(long lagSampleIntervalMs) { this.lagSampleIntervalMs = lagSampleIntervalMs; }
+    public long getHealthMaxLagMs() { return healthMaxLagMs; }
+    public void setHealthMaxLagMs(long healthMaxLagMs) { this.healthMaxLagMs = healthMaxLagMs; }
     public String getPendingStatus() { return pendingStatus; }
     public void setPendingStatus(String pendingStatus) { this.pendingStatus = pendingStatus; }
     public String getSentStatus() { return sentStatus; }
     public void setSentStatus(String sentStatus) { this.sentStatus = sentStatus; }
+    public String getFailedStatus() { return failedStatus; }
+    public void setFailedStatus(String failedStatus) { this.failedStatus = failedStatus; }
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+    public long getRetryBackoffMs() { return retryBackoffMs; }
+    public void setRetryBackoffMs(long retryBackoffMs) { this.retryBackoffMs = retryBackoffMs; }
+    public long getRetryBackoffMaxMs() { return retryBackoffMaxMs; }
+    public void setRetryBackoffMaxMs(long retryBackoffMaxMs) { this.retryBackoffMaxMs = retryBackoffMaxMs; }
+    public boolean isCreateRetryColumns() { return createRetryColumns; }
+    public void setCreateRetryColumns(boolean createRetryColumns) { this.createRetryColumns = createRetryColumns; }
 
     public String getBrokerUrl() { return brokerUrl; }
     public void setBrokerUrl(String brokerUrl) { this.brokerUrl = brokerUrl; }
@@ -54,4 +315,62 @@ public class OutboxProperties {
     public void setPassword(String password) { this.password = password; }
     public String getQueueName() { return queueName; }
     public void setQueueName(String queueName) { this.queueName = queueName; }
+    public int getJmsSessionCacheSize() { return jmsSessionCacheSize; }
+    public void setJmsSessionCacheSize(int jmsSessionCacheSize) { this.jmsSessionCacheSize = jmsSessionCacheSize; }
+    public boolean isAsyncSend() { return asyncSend; }
+    public void setAsyncSend(boolean asyncSend) { this.asyncSend = asyncSend; }
+    public int getMaxInFlightSends() { return maxInFlightSends; }
+    public void setMaxInFlightSends(int maxInFlightSends) { this.maxInFlightSends = maxInFlightSends; }
+    public long getSendTimeoutMs() { return sendTimeoutMs; }
+    public void setSendTimeoutMs(long sendTimeoutMs) { this.sendTimeoutMs = sendTimeoutMs; }
+    public boolean isEnvelopeEnabled() { return envelopeEnabled; }
+    public void setEnvelopeEnabled(boolean envelopeEnabled) { this.envelopeEnabled = envelopeEnabled; }
+    public int getEnvelopeMaxEvents() { return envelopeMaxEvents; }
+    public void setEnvelopeMaxEvents(int envelopeMaxEvents) { this.envelopeMaxEvents = envelopeMaxEvents; }
+    public int getEnvelopeMaxBytes() { return envelopeMaxBytes; }
+    public void setEnvelopeMaxBytes(int envelopeMaxBytes) { this.envelopeMaxBytes = envelopeMaxBytes; }
+    public boolean isEnvelopeCompression() { return envelopeCompression; }
+    public void setEnvelopeCompression(boolean envelopeCompression) { this.envelopeCompression = envelopeCompression; }
+    public String getEventTypeColumn() { return eventTypeColumn; }
+    public void setEventTypeColumn(String eventTypeColumn) { this.eventTypeColumn = eventTypeColumn; }
+    public String getSourceColumn() { return sourceColumn; }
+    public void setSourceColumn(String sourceColumn) { this.sourceColumn = sourceColumn; }
+    public String getAggregateIdColumn() { return aggregateIdColumn; }
+    public void setAggregateIdColumn(String aggregateIdColumn) { this.aggregateIdColumn = aggregateIdColumn; }
+    public String getPartitionKeyColumn() { return partitionKeyColumn; }
+    public void setPartitionKeyColumn(String partitionKeyColumn) { this.partitionKeyColumn = partitionKeyColumn; }
+    public boolean isMessageGroups() { return messageGroups; }
+    public void setMessageGroups(boolean messageGroups) { this.messageGroups = messageGroups; }
+    public int getTapCapacity() { return tapCapacity; }
+    public void setTapCapacity(int tapCapacity) { this.tapCapacity = tapCapacity; }
+    public int getTapSampleEvery() { return tapSampleEvery; }
+    public void setTapSampleEvery(int tapSampleEvery) { this.tapSampleEvery = tapSampleEvery; }
+    public int getTapMaxPayloadChars() { return tapMaxPayloadChars; }
+    public void setTapMaxPayloadChars(int tapMaxPayloadChars) { this.tapMaxPayloadChars = tapMaxPayloadChars; }
+    public int getShards() { return shards; }
+    public void setShards(int shards) { this.shards = shards; }
+    public long getShardRebalanceIntervalMs() { return shardRebalanceIntervalMs; }
+    public void setShardRebalanceIntervalMs(long shardRebalanceIntervalMs) { this.shardRebalanceIntervalMs = shardRebalanceIntervalMs; }
+    public long getShardLeaseMs() { return shardLeaseMs; }
+    public void setShardLeaseMs(long shardLeaseMs) { this.shardLeaseMs = shardLeaseMs; }
+    public String getSpooledStatus() { return spooledStatus; }
+    public void setSpooledStatus(String spooledStatus) { this.spooledStatus = spooledStatus; }
+    public boolean isCircuitBreakerEnabled() { return circuitBreakerEnabled; }
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) { this.circuitBreakerEnabled = circuitBreakerEnabled; }
+    public int getBreakerFailureThreshold() { return breakerFailureThreshold; }
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) { this.breakerFailureThreshold = breakerFailureThreshold; }
+    public long getBreakerOpenMs() { return breakerOpenMs; }
+    public void setBreakerOpenMs(long breakerOpenMs) { this.breakerOpenMs = breakerOpenMs; }
+    public long getBreakerOpenMaxMs() { return breakerOpenMaxMs; }
+    public void setBreakerOpenMaxMs(long breakerOpenMaxMs) { this.breakerOpenMaxMs = breakerOpenMaxMs; }
+    public boolean isSpoolEnabled() { return spoolEnabled; }
+    public void setSpoolEnabled(boolean spoolEnabled) { this.spoolEnabled = spoolEnabled; }
+    public String getSpoolDirectory() { return spoolDirectory; }
+    public void setSpoolDirectory(String spoolDirectory) { this.spoolDirectory = spoolDirectory; }
+    public long getSpoolMaxBytes() { return spoolMaxBytes; }
+    public void setSpoolMaxBytes(long spoolMaxBytes) { this.spoolMaxBytes = spoolMaxBytes; }
+    public int getWriterInsertRows() { return writerInsertRows; }
+    public void setWriterInsertRows(int writerInsertRows) { this.writerInsertRows = writerInsertRows; }
+    public int getWriterCopyThreshold() { return writerCopyThreshold; }
+    public void setWriterCopyThreshold(int writerCopyThreshold) { this.writerCopyThreshold = writerCopyThreshold; }
 }
@@ -1,22 +1,105 @@
 package com.example.main.core;
 
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
-public class GenericOutboxRepository {
+import com.example.main.config.OutboxProperties;
+
+public class GenericOutboxRepository implements OutboxStore {
 
     private final JdbcTemplate jdbc;
     private final String tableName;
     private final String pendingStatusCol = "status";
     private final String payloadCol = "payload";
     private final String idCol = "id";
+    // publish order, e.g. created_at; null orders by id only
+    private final String orderCol;
+    // records with the same value here always land in the same partition; null partitions by id
+    private final String orderingKeyCol;
+    private final String attemptsCol = "attempts";
+    private final String nextAttemptCol = "next_attempt_at";
+    private final String lastErrorCol = "last_error";
+    // maintain the retry columns; claims then skip rows that are not due yet
+    // and, with an ordering key, rows queued behind a key waiting to retry
+    private final boolean trackAttempts;
+    // stamped when a row is marked sent, so the purger can age rows out; null = not kept
+    private final String sentAtCol;
+    // creation time, for the age of the oldest pending row; null = not known
+    private final String createdAtCol;
+    // optional metadata columns copied onto claimed records; null = not mapped
+    private final String eventTypeCol;
+    private final String sourceCol;
+    private final String aggregateIdCol;
+    private final String partitionKeyCol;
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    // bind parameters per statement; the PostgreSQL protocol caps them at 65535, older drivers at 32767
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final String notifyChannel;
+    private volatile Boolean postgres;
 
     public GenericOutboxRepository(JdbcTemplate jdbc, String tableName) {
+        this(jdbc, tableName, tableName + "_pending");
+    }
+
+    public GenericOutboxRepository(JdbcTemplate jdbc, String tableName, String notifyChannel) {
+        this(jdbc, tableName, notifyChannel, null, null, false, null, null, null, null, null, null);
+    }
+
+    /** Table, columns and features as configured under outbox.*. */
+    public GenericOutboxRepository(JdbcTemplate jdbc, OutboxProperties props) {
+        this(jdbc, props.getTableName(), props.getNotifyChannel(), props.getOrderColumn(),
+                props.getOrderingKeyColumn(), props.getMaxAttempts() > 0, props.getSentAtColumn(),
+                props.getCreatedAtColumn(), props.getEventTypeColumn(), props.getSourceColumn(),
+                props.getAggregateIdColumn(), props.getPartitionKeyColumn());
+    }
+
+    private GenericOutboxRepository(JdbcTemplate jdbc, String tableName, String notifyChannel,
+                                    String orderColumn, String orderingKeyColumn, boolean trackAttempts,
+                                    String sentAtColumn, String createdAtColumn, String eventTypeColumn,
+                                    String sourceColumn, String aggregateIdColumn, String partitionKeyColumn) {
         this.jdbc = jdbc;
         this.tableName = tableName;
+        this.notifyChannel = notifyChannel;
+        this.orderCol = orderColumn;
+        this.orderingKeyCol = orderingKeyColumn;
+        this.trackAttempts = trackAttempts;
+        this.sentAtCol = sentAtColumn;
+        this.createdAtCol = createdAtColumn;
+        this.eventTypeCol = eventTypeColumn;
+        this.sourceCol = sourceColumn;
+        this.aggregateIdCol = aggregateIdColumn;
+        this.partitionKeyCol = partitionKeyColumn;
     }
 
     /**
@@ -26,24 +109,505 @@ public class GenericOutboxRepository {
      */
     @Transactional
     public OutboxRecord fetchNextPending(String pendingStatus) {
+        return fetchNextPending(pendingStatus, 0, 1);
+    }
+
+    /** {@link #fetchNextPending(String)} restricted to one partition of the ordering key. */
+    @Transactional
+    @Override
+    public OutboxRecord fetchNextPending(String pendingStatus, int partition, int partitions) {
+        List<OutboxRecord> rows = claimPending(pendingStatus, 1, partition, partitions);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Claim up to {@code limit} pending records in one statement. The row locks
+     * last as long as the caller's transaction, so call this inside one that
+     * also publishes and marks the rows; other instances skip the locked rows.
+     */
+    public List<OutboxRecord> claimPending(String pendingStatus, int limit) {
+        return claimPending(pendingStatus, limit, 0, 1);
+    }
+
+    /**
+     * {@link #claimPending(String, int)} restricted to the rows whose ordering
+     * key hashes to {@code partition} out of {@code partitions}, oldest first.
+     * As long as one worker owns a partition, records sharing a key never
+     * overtake each other.
+     */
+    @Override
+    public List<OutboxRecord> claimPending(String pendingStatus, int limit, int partition, int partitions) {
         String sql = "SELECT " + idCol + ", " + payloadCol +
+                     (trackAttempts ? ", " + attemptsCol : "") +
+                     (orderingKeyCol != null ? ", " + orderingKeyCol : "") +
+                     metadataColumns() +
                      " FROM " + tableName +
-                     " WHERE " + pendingStatusCol + " = ? " +
-                     " ORDER BY " + idCol +
-                     " LIMIT 1 FOR UPDATE SKIP LOCKED";
-
-        List<OutboxRecord> rows = jdbc.query(sql, new Object[]{pendingStatus}, (rs, i) -> {
-//            UUID id = rs.getString(idCol);
-            UUID id = UUID.fromString(rs.getString(idCol));
-            String payload = rs.getString(payloadCol);
-            return new OutboxRecord(id, payload);
-        });
+                     // a literal, not a parameter, so generic plans still match the partial pending index
+                     " WHERE " + pendingStatusCol + " = " + quoteLiteral(pendingStatus) +
+                     (partitions > 1 ? " AND " + partitionExpression() + " = ?" : "") +
+                     (trackAttempts ? dueFilter(pendingStatus) : "") +
+                     " ORDER BY " + (orderCol != null ? orderCol + ", " : "") + idCol +
+                     " LIMIT ? FOR UPDATE SKIP LOCKED";
 
-        return rows.isEmpty() ? null : rows.get(0);
+        List<Object> args = new ArrayList<>();
+        if (partitions > 1) {
+            args.add(partitions);
+            args.add(partition);
+        }
+        args.add(limit);
+        return jdbc.query(sql, (rs, i) -> {
+            OutboxRecord rec = new OutboxRecord(UUID.fromString(rs.getString(idCol)), rs.getString(payloadCol));
+            if (trackAttempts) rec.setAttempts(rs.getInt(attemptsCol));
+            if (orderingKeyCol != null) rec.setOrderingKey(rs.getString(orderingKeyCol));
+            if (eventTypeCol != null) rec.setEventType(rs.getString(eventTypeCol));
+            if (sourceCol != null) rec.setSource(rs.getString(sourceCol));
+            if (aggregateIdCol != null) rec.setAggregateId(rs.getString(aggregateIdCol));
+            if (partitionKeyCol != null) rec.setPartitionKey(rs.getString(partitionKeyCol));
+            if (createdAtCol != null) {
+                Timestamp createdAt = rs.getTimestamp(createdAtCol);
+                rec.setCreatedAt(createdAt == null ? null : createdAt.toInstant());
+            }
+            return rec;
+        }, args.toArray());
+    }
+
+    private String metadataColumns() {
+        StringBuilder columns = new StringBuilder();
+        for (String col : new String[] {eventTypeCol, sourceCol, aggregateIdCol, partitionKeyCol, createdAtCol}) {
+            if (col != null) columns.append(", ").append(col);
+        }
+        return columns.toString();
+    }
+
+    /**
+     * Skip rows whose retry is not due, and keep a key's later rows back while
+     * its earlier row waits, so a retry does not reorder the key.
+     */
+    private String dueFilter(String pendingStatus) {
+        String due = " AND (" + nextAttemptCol + " IS NULL OR " + nextAttemptCol + " <= CURRENT_TIMESTAMP)";
+        if (orderingKeyCol == null) return due;
+        return due + " AND NOT EXISTS (SELECT 1 FROM " + tableName + " w" +
+               " WHERE w." + orderingKeyCol + " = " + tableName + "." + orderingKeyCol +
+               " AND w." + pendingStatusCol + " = " + quoteLiteral(pendingStatus) +
+               " AND w." + nextAttemptCol + " > CURRENT_TIMESTAMP)";
+    }
+
+    /**
+     * Insert new records with {@code status}, up to {@code rowsPerStatement}
+     * rows per multi-row INSERT. Writes the id, payload and status plus every
+     * column configured for the relay; attempts start at the record's count.
+     * Runs in the caller's transaction when there is one.
+     *
+     * @return rows inserted
+     */
+    public int insert(List<OutboxRecord> records, String status, int rowsPerStatement) {
+        if (records.isEmpty()) return 0;
+        Map<String, Function<OutboxRecord, Object>> columns = insertColumns(status);
+        int rows = Math.max(1, Math.min(rowsPerStatement, MAX_BIND_PARAMETERS / columns.size()));
+        String row = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        boolean postgres = isPostgres();
+        int inserted = 0;
+        for (int from = 0; from < records.size(); from += rows) {
+            List<OutboxRecord> chunk = records.subList(from, Math.min(records.size(), from + rows));
+            String sql = "INSERT INTO " + tableName + " (" + String.join(", ", columns.keySet()) + ") VALUES " +
+                         String.join(", ", Collections.nCopies(chunk.size(), row));
+            inserted += jdbc.update(sql, ps -> {
+                int index = 1;
+                for (OutboxRecord rec : chunk) {
+                    for (Function<OutboxRecord, Object> column : columns.values()) {
+                        Object value = column.apply(rec);
+                        if (value instanceof Instant instant) {
+                            ps.setTimestamp(index++, Timestamp.from(instant));
+                        } else if (value instanceof String && postgres) {
+                            // untyped, so PostgreSQL casts it to the column type, e.g. a uuid aggregate id
+                            ps.setObject(index++, value, Types.OTHER);
+                        } else {
+                            ps.setObject(index++, value);
+                        }
+                    }
+                }
+            });
+        }
+        return inserted;
+    }
+
+    /**
+     * PostgreSQL: {@link #insert(List, String, int)} as one COPY ... FROM
+     * STDIN, which skips the per-row parse and bind work of an INSERT and pays
+     * off for large batches. Runs in the caller's transaction when there is one.
+     *
+     * @return rows copied
+     */
+    public long copy(List<OutboxRecord> records, String status) {
+        if (records.isEmpty()) return 0;
+        Map<String, Function<OutboxRecord, Object>> columns = insertColumns(status);
+        String sql = "COPY " + tableName + " (" + String.join(", ", columns.keySet()) + ") FROM STDIN";
+        return jdbc.execute((ConnectionCallback<Long>) con ->
+                PostgresCopy.copyIn(con, sql, records, columns.values()));
+    }
+
+    /** Columns an insert writes, with the record value each one takes. */
+    private Map<String, Function<OutboxRecord, Object>> insertColumns(String status) {
+        Map<String, Function<OutboxRecord, Object>> columns = new LinkedHashMap<>();
+        columns.put(idCol, OutboxRecord::getId);
+        columns.put(payloadCol, OutboxRecord::getPayload);
+        columns.put(pendingStatusCol, rec -> status);
+        if (trackAttempts) columns.put(attemptsCol, OutboxRecord::getAttempts);
+        putColumn(columns, orderingKeyCol, OutboxRecord::getOrderingKey);
+        putColumn(columns, eventTypeCol, OutboxRecord::getEventType);
+        putColumn(columns, sourceCol, OutboxRecord::getSource);
+        putColumn(columns, aggregateIdCol, OutboxRecord::getAggregateId);
+        putColumn(columns, partitionKeyCol, OutboxRecord::getPartitionKey);
+        putColumn(columns, createdAtCol, OutboxRecord::getCreatedAt);
+        return columns;
+    }
+
+    /** A column can back several record fields, e.g. an aggregate id that is also the ordering key. */
+    private static void putColumn(Map<String, Function<OutboxRecord, Object>> columns, String column,
+                                  Function<OutboxRecord, Object> value) {
+        if (column == null) return;
+        columns.merge(column, value, (first, second) -> rec -> {
+            Object v = first.apply(rec);
+            return v != null ? v : second.apply(rec);
+        });
     }
 
     public void updateStatus(UUID id, String status) {
         String sql = "UPDATE " + tableName + " SET " + pendingStatusCol + " = ? WHERE " + idCol + " = ?";
         jdbc.update(sql, status, id);
     }
+
+    /**
+     * Set the status of all given records with a single UPDATE. Uses a plain
+     * IN list, like {@link #markSent}, so it runs on any database.
+     */
+    @Override
+    public long updateStatus(Collection<UUID> ids, String status) {
+        if (ids.isEmpty()) return 0;
+        String sql = "UPDATE " + tableName + " SET " + pendingStatusCol + " = ?" +
+                     " WHERE " + idCol + " IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(status);
+        args.addAll(ids);
+        return jdbc.update(sql, args.toArray());
+    }
+
+    /** Pending count and oldest pending creation time, in one query over the pending index. */
+    @Override
+    public OutboxBacklog pendingBacklog(String pendingStatus) {
+        String sql = "SELECT COUNT(*)" + (createdAtCol != null ? ", MIN(" + createdAtCol + ")" : "") +
+                     " FROM " + tableName +
+                     " WHERE " + pendingStatusCol + " = " + quoteLiteral(pendingStatus);
+        return jdbc.queryForObject(sql, (rs, i) -> {
+            Timestamp oldest = createdAtCol != null ? rs.getTimestamp(2) : null;
+            return new OutboxBacklog(rs.getLong(1), oldest == null ? null : oldest.toInstant());
+        });
+    }
+
+    /**
+     * Mark rows sent in one UPDATE, stamping the sent-at column if one is
+     * configured. Uses a plain IN list so it runs on any database.
+     */
+    @Override
+    public long markSent(Collection<UUID> ids, String sentStatus) {
+        if (ids.isEmpty()) return 0;
+        String sql = "UPDATE " + tableName + " SET " + pendingStatusCol + " = ?" +
+                     (sentAtCol != null ? ", " + sentAtCol + " = CURRENT_TIMESTAMP" : "") +
+                     " WHERE " + idCol + " IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(sentStatus);
+        args.addAll(ids);
+        return jdbc.update(sql, args.toArray());
+    }
+
+    /**
+     * Delete up to {@code limit} sent rows whose sent-at is before
+     * {@code cutoff}, copying them into {@code archiveTable} first when it is
+     * not null. Rows are picked with SKIP LOCKED and the statement touches at
+     * most {@code limit} rows, so it never holds long locks. Archiving needs
+     * PostgreSQL; deleting works on MySQL too.
+     *
+     * @return rows removed from the outbox
+     */
+    @Override
+    public long purgeSent(String sentStatus, Instant cutoff, int limit, String archiveTable) {
+        if (sentAtCol == null) {
+            throw new IllegalStateException("Purging needs outbox.sent-at-column");
+        }
+        Timestamp before = Timestamp.from(cutoff);
+        if (!isPostgres()) {
+            if (archiveTable != null) {
+                throw new IllegalStateException("Archiving outbox rows is only supported on PostgreSQL");
+            }
+            return jdbc.update("DELETE FROM " + tableName + " WHERE " + pendingStatusCol + " = ? AND " +
+                    sentAtCol + " < ? LIMIT ?", sentStatus, before, limit);
+        }
+        String doomed = "SELECT " + idCol + " FROM " + tableName +
+                        " WHERE " + pendingStatusCol + " = ? AND " + sentAtCol + " < ?" +
+                        " LIMIT ? FOR UPDATE SKIP LOCKED";
+        if (archiveTable == null) {
+            return jdbc.update("DELETE FROM " + tableName + " WHERE " + idCol + " IN (" + doomed + ")",
+                    sentStatus, before, limit);
+        }
+        return jdbc.update("WITH moved AS (DELETE FROM " + tableName + " WHERE " + idCol + " IN (" + doomed + ")" +
+                           " RETURNING *) INSERT INTO " + archiveTable + " SELECT * FROM moved",
+                sentStatus, before, limit);
+    }
+
+    /** Claims are FOR UPDATE SKIP LOCKED row locks, partitioned by the ordering key's hash. */
+    @Override
+    public boolean locksClaimedRows() {
+        return true;
+    }
+
+    /** Run maintenance DDL such as {@link #pendingIndexDdl(String)}. */
+    public void execute(String ddl) {
+        jdbc.execute(ddl);
+    }
+
+    /** PostgreSQL: create the archive table with the outbox's columns if it is missing. */
+    public void createArchiveTable(String archiveTable) {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS " + archiveTable + " (LIKE " + tableName + " INCLUDING DEFAULTS)");
+    }
+
+    /**
+     * Index covering only the pending rows in claim order. It stays as small
+     * as the backlog however many sent rows the table holds, which keeps the
+     * claim query's cost flat. MySQL has no partial indexes: returns null.
+     */
+    public String pendingIndexDdl(String pendingStatus) {
+        if (!isPostgres()) return null;
+        return "CREATE INDEX " + (isPartitioned() ? "" : "CONCURRENTLY ") + "IF NOT EXISTS " +
+               tableName.replaceAll("\\W", "_") + "_pending_idx ON " + tableName +
+               " (" + (orderCol != null ? orderCol + ", " : "") + idCol + ")" +
+               " WHERE " + pendingStatusCol + " = " + quoteLiteral(pendingStatus);
+    }
+
+    /**
+     * ALTER TABLE statements adding whichever retry-tracking columns
+     * (attempts, next_attempt_at, last_error) the table lacks, for
+     * outbox.max-attempts above 0. Empty when they all exist.
+     */
+    public List<String> retryColumnsDdl() {
+        Set<String> existing = jdbc.execute((ConnectionCallback<Set<String>>) con -> {
+            Set<String> columns = new HashSet<>();
+            try (Statement statement = con.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " WHERE 1 = 0")) {
+                ResultSetMetaData meta = rs.getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    columns.add(meta.getColumnName(i).toLowerCase(Locale.ROOT));
+                }
+            }
+            return columns;
+        });
+        boolean postgres = isPostgres();
+        Map<String, String> wanted = new LinkedHashMap<>();
+        wanted.put(attemptsCol, "integer NOT NULL DEFAULT 0");
+        wanted.put(nextAttemptCol, postgres ? "timestamp(6) with time zone" : "timestamp(6) NULL");
+        wanted.put(lastErrorCol, "text");
+        List<String> ddl = new ArrayList<>();
+        wanted.forEach((column, type) -> {
+            if (!existing.contains(column)) {
+                ddl.add("ALTER TABLE " + tableName + " ADD COLUMN " + (postgres ? "IF NOT EXISTS " : "") +
+                        column + " " + type);
+            }
+        });
+        return ddl;
+    }
+
+    /**
+     * PostgreSQL, table partitioned by RANGE on a timestamp: make sure the
+     * daily partitions {@code <table>_pYYYYMMDD} for {@code days} days from
+     * {@code from} exist.
+     */
+    public void ensureDailyPartitions(LocalDate from, int days) {
+        for (int i = 0; i < days; i++) {
+            LocalDate day = from.plusDays(i);
+            jdbc.execute("CREATE TABLE IF NOT EXISTS " + schemaPrefix() + partitionName(day) + " PARTITION OF " + tableName +
+                         " FOR VALUES FROM (" + quoteLiteral(day + "T00:00:00Z") + ")" +
+                         " TO (" + quoteLiteral(day.plusDays(1) + "T00:00:00Z") + ")");
+        }
+    }
+
+    /**
+     * Detach and drop the daily partitions older than {@code cutoff} whose
+     * rows are all sent. A partition that still holds a pending or failed row
+     * is kept until that row is dealt with.
+     *
+     * @return names of the partitions dropped
+     */
+    public List<String> dropDailyPartitionsBefore(LocalDate cutoff, String sentStatus) {
+        List<String> partitions = jdbc.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid" +
+                " WHERE i.inhparent = CAST(? AS regclass)", String.class, tableName);
+        String prefix = partitionPrefix();
+        List<String> dropped = new ArrayList<>();
+        for (String partition : partitions) {
+            if (!partition.startsWith(prefix) || !partition.substring(prefix.length()).matches("\\d{8}")) continue;
+            LocalDate day = LocalDate.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+            if (!day.isBefore(cutoff)) continue;
+            String qualified = schemaPrefix() + partition;
+            Boolean unfinished = jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + qualified +
+                    " WHERE " + pendingStatusCol + " <> ?)", Boolean.class, sentStatus);
+            if (Boolean.TRUE.equals(unfinished)) continue;
+            jdbc.execute("ALTER TABLE " + tableName + " DETACH PARTITION " + qualified);
+            jdbc.execute("DROP TABLE " + qualified);
+            dropped.add(partition);
+        }
+        return dropped;
+    }
+
+    private String partitionName(LocalDate day) {
+        return partitionPrefix() + PARTITION_SUFFIX.format(day);
+    }
+
+    private String partitionPrefix() {
+        // pg_class names carry no schema
+        return tableName.substring(tableName.lastIndexOf('.') + 1) + "_p";
+    }
+
+    private String schemaPrefix() {
+        return tableName.substring(0, tableName.lastIndexOf('.') + 1);
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbc.queryForObject(
+                "SELECT c.relkind = 'p' FROM pg_class c WHERE c.oid = CAST(? AS regclass)", Boolean.class, tableName);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * Record a failed publish: store the attempt count and error, and either
+     * schedule the next attempt or move the row to another status.
+     *
+     * @param status        pending to retry at {@code nextAttemptAt}, or the
+     *                      failed status to park the row for good
+     */
+    @Override
+    public void recordFailure(UUID id, int attempts, Instant nextAttemptAt, String lastError, String status) {
+        String sql = "UPDATE " + tableName + " SET " + attemptsCol + " = ?, " + nextAttemptCol + " = ?, " +
+                     lastErrorCol + " = ?, " + pendingStatusCol + " = ? WHERE " + idCol + " = ?";
+        jdbc.update(sql, attempts, nextAttemptAt == null ? null : Timestamp.from(nextAttemptAt), lastError, status, id);
+    }
+
+    /**
+     * App-side alternative to the trigger: announce new pending rows to a
+     * LISTENing relay. Call it in the transaction that made rows pending;
+     * Postgres delivers it on commit and folds repeats within one transaction
+     * into a single notification. A no-op on other databases.
+     */
+    public void notifyPending() {
+        if (!isPostgres()) return;
+        jdbc.query("SELECT pg_notify(?, '')", rs -> null, notifyChannel);
+    }
+
+    /**
+     * Create (or replace) a trigger that notifies on every insert or status
+     * change that leaves a row in {@code pendingStatus}.
+     */
+    public void installNotifyTrigger(String pendingStatus) {
+        String function = tableName.replaceAll("\\W", "_") + "_notify_pending";
+        jdbc.execute("CREATE OR REPLACE FUNCTION " + function + "() RETURNS trigger AS $$ "
+                + "BEGIN PERFORM pg_notify(" + quoteLiteral(notifyChannel) + ", ''); RETURN NULL; END "
+                + "$$ LANGUAGE plpgsql");
+        jdbc.execute("DROP TRIGGER IF EXISTS " + function + " ON " + tableName);
+        jdbc.execute("CREATE TRIGGER " + function
+                + " AFTER INSERT OR UPDATE OF " + pendingStatusCol + " ON " + tableName
+                + " FOR EACH ROW WHEN (NEW." + pendingStatusCol + " = " + quoteLiteral(pendingStatus) + ")"
+                + " EXECUTE FUNCTION " + function + "()");
+    }
+
+    /**
+     * Partition of a row as a non-negative hash of its ordering key modulo the
+     * bound partition count. Rows without a key fall back to their id.
+     * PostgreSQL uses hashtext, anything else CRC32 (MySQL/MariaDB).
+     */
+    private String partitionExpression() {
+        String key = orderingKeyCol != null
+                ? "COALESCE(CAST(" + orderingKeyCol + " AS " + textType() + "), CAST(" + idCol + " AS " + textType() + "))"
+                : "CAST(" + idCol + " AS " + textType() + ")";
+        return isPostgres()
+                ? "MOD(hashtext(" + key + ") & 2147483647, ?)"
+                : "MOD(CRC32(" + key + "), ?)";
+    }
+
+    private String textType() {
+        return isPostgres() ? "text" : "CHAR";
+    }
+
+    public String getNotifyChannel() {
+        return notifyChannel;
+    }
+
+    public boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbc.execute((ConnectionCallback<Boolean>) con ->
+                    "PostgreSQL".equalsIgnoreCase(con.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /** Kept apart so the PostgreSQL driver classes are only loaded when COPY is used. */
+    private static final class PostgresCopy {
+
+        private static final int BUFFER_CHARS = 64 * 1024;
+
+        static long copyIn(Connection con, String sql, List<OutboxRecord> records,
+                           Collection<Function<OutboxRecord, Object>> columns) throws SQLException {
+            CopyIn copy = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                StringBuilder buffer = new StringBuilder(BUFFER_CHARS + 1024);
+                for (OutboxRecord rec : records) {
+                    boolean first = true;
+                    for (Function<OutboxRecord, Object> column : columns) {
+                        if (!first) buffer.append('\t');
+                        first = false;
+                        appendValue(buffer, column.apply(rec));
+                    }
+                    buffer.append('\n');
+                    if (buffer.length() >= BUFFER_CHARS) write(copy, buffer);
+                }
+                write(copy, buffer);
+                return copy.endCopy();
+            } finally {
+                if (copy.isActive()) copy.cancelCopy();
+            }
+        }
+
+        private static void write(CopyIn copy, StringBuilder buffer) throws SQLException {
+            if (buffer.length() == 0) return;
+            byte[] utf8 = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(utf8, 0, utf8.length);
+            buffer.setLength(0);
+        }
+
+        /** COPY text format: {@code \N} for null, backslash escapes for the separators. */
+        private static void appendValue(StringBuilder buffer, Object value) {
+            if (value == null) {
+                buffer.append("\\N");
+                return;
+            }
+            if (value instanceof Instant instant) {
+                // local time with its offset, as the driver binds a Timestamp, so both paths store the same value
+                buffer.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                        OffsetDateTime.ofInstant(instant, ZoneId.systemDefault())));
+                return;
+            }
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+        }
+    }
 }
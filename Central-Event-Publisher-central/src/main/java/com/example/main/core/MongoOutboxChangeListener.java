@@ -0,0 +1,125 @@
+package com.example.main.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.example.main.config.OutboxProperties;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+/**
+ * Push trigger for MongoDB outboxes. Watches the outbox collection with a
+ * change stream and wakes the {@link OutboxPoller} when a document is
+ * inserted as, or updated to, the pending status. Lease updates do not touch
+ * the status and are filtered out on the server. Change streams need a
+ * replica set; without one the listener keeps retrying and the poller's
+ * backoff carries the relay.
+ */
+public class MongoOutboxChangeListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoOutboxChangeListener.class);
+
+    private static final long MAX_AWAIT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxPoller poller;
+    private final OutboxProperties props;
+    private final OutboxMetrics metrics;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    public MongoOutboxChangeListener(MongoTemplate mongoTemplate,
+                                     OutboxPoller poller,
+                                     OutboxProperties props,
+                                     OutboxMetrics metrics) {
+        this.mongoTemplate = mongoTemplate;
+        this.poller = poller;
+        this.props = props;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new CustomizableThreadFactory("outbox-watch-").newThread(this::watch);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void watch() {
+        String pending = props.getPendingStatus();
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.or(
+                Filters.and(Filters.in("operationType", "insert", "replace"),
+                        Filters.eq("fullDocument.status", pending)),
+                Filters.and(Filters.eq("operationType", "update"),
+                        Filters.eq("updateDescription.updatedFields.status", pending)))));
+
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = mongoTemplate
+                    .getCollection(props.getTableName())
+                    .watch(pipeline)
+                    .maxAwaitTime(MAX_AWAIT_MS, TimeUnit.MILLISECONDS)
+                    .cursor()) {
+                log.info("Watching outbox collection {} for pending documents", props.getTableName());
+
+                // documents may have arrived while nobody was watching
+                poller.wakeUp();
+                while (running) {
+                    int changes = 0;
+                    // drain what is buffered so a burst costs one wake-up
+                    while (cursor.tryNext() != null) {
+                        changes++;
+                        if (cursor.available() == 0) break;
+                    }
+                    if (changes > 0) {
+                        metrics.recordNotifications(changes);
+                        poller.wakeUp();
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) return;
+                log.warn("Outbox change stream failed, retrying in {} ms: {}", RECONNECT_DELAY_MS, e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
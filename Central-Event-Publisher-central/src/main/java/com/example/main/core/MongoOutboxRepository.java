@@ -1,51 +1,364 @@
 package com.example.main.core;
 
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
-public class MongoOutboxRepository {
+import java.util.regex.Pattern;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Outbox access for MongoDB. Records are claimed with a lease instead of a
+ * row lock: a claim sets {@code leaseOwner} and {@code leaseUntil}, and only
+ * pending documents without a live lease can be claimed, so several relays
+ * can share a collection. A relay that dies mid-batch leaves its leases to
+ * expire, after which any relay reclaims the documents.
+ */
+public class MongoOutboxRepository implements OutboxStore {
+
+    public static final long DEFAULT_LEASE_MS = 60_000L;
+    /** buckets shards are built from, so at most this many shards */
+    public static final int ID_BUCKETS = 256;
 
     private final MongoTemplate mongoTemplate;
     private final String collectionName;
+    private final String ownerId;
+    private final long leaseMs;
     private final String pendingStatusCol = "status";
     private final String payloadCol = "payload";
     private final String idCol = "_id";
+    private final String leaseOwnerCol = "leaseOwner";
+    private final String leaseUntilCol = "leaseUntil";
+    private final String claimIdCol = "claimId";
+    private final String attemptsCol = "attempts";
+    private final String nextAttemptCol = "nextAttemptAt";
+    private final String lastErrorCol = "lastError";
+    private final String sentAtCol = "sentAt";
+    private final String shardBucketCol = "shardBucket";
+
+    // creation time field, for the age of the oldest pending document; null = not known
+    private final String createdAtCol;
+    // optional metadata fields copied onto claimed records; null = not mapped
+    private final String eventTypeCol;
+    private final String sourceCol;
+    private final String aggregateIdCol;
+    private final String partitionKeyCol;
+    private final String orderingKeyCol;
 
     public MongoOutboxRepository(MongoTemplate mongoTemplate, String collectionName) {
+        this(mongoTemplate, collectionName, UUID.randomUUID().toString(), DEFAULT_LEASE_MS);
+    }
+
+    /**
+     * @param ownerId identifies this relay in {@code leaseOwner}
+     * @param leaseMs how long a claim is held before other relays may take it
+     *                over; must comfortably exceed the time to publish a batch
+     */
+    public MongoOutboxRepository(MongoTemplate mongoTemplate, String collectionName, String ownerId, long leaseMs) {
+        this(mongoTemplate, collectionName, ownerId, leaseMs, null);
+    }
+
+    /** @param createdAtField creation time field, for the backlog age; null if there is none */
+    public MongoOutboxRepository(MongoTemplate mongoTemplate, String collectionName, String ownerId, long leaseMs,
+                                 String createdAtField) {
+        this(mongoTemplate, collectionName, ownerId, leaseMs, createdAtField, null, null, null, null, null);
+    }
+
+    /** Collection, lease and fields as configured under outbox.*. */
+    public MongoOutboxRepository(MongoTemplate mongoTemplate, OutboxProperties props) {
+        this(mongoTemplate, props.getTableName(), props.getRelayId(), props.getClaimLeaseMs(),
+                props.getCreatedAtColumn(), props.getEventTypeColumn(), props.getSourceColumn(),
+                props.getAggregateIdColumn(), props.getPartitionKeyColumn(), props.getOrderingKeyColumn());
+    }
+
+    private MongoOutboxRepository(MongoTemplate mongoTemplate, String collectionName, String ownerId, long leaseMs,
+                                  String createdAtField, String eventTypeField, String sourceField,
+                                  String aggregateIdField, String partitionKeyField, String orderingKeyField) {
+        this.createdAtCol = createdAtField;
         this.mongoTemplate = mongoTemplate;
         this.collectionName = collectionName;
+        this.ownerId = ownerId;
+        this.leaseMs = leaseMs;
+        this.eventTypeCol = eventTypeField;
+        this.sourceCol = sourceField;
+        this.aggregateIdCol = aggregateIdField;
+        this.partitionKeyCol = partitionKeyField;
+        this.orderingKeyCol = orderingKeyField;
+    }
+
+    public String getCollectionName() { return collectionName; }
+
+    /** Pending count and oldest pending creation time. */
+    @Override
+    public OutboxBacklog pendingBacklog(String pendingStatus) {
+        Query pending = new Query(Criteria.where(pendingStatusCol).is(pendingStatus));
+        long count = mongoTemplate.count(pending, collectionName);
+        if (count == 0 || createdAtCol == null) return new OutboxBacklog(count, null);
+        pending.with(Sort.by(createdAtCol)).limit(1).fields().include(createdAtCol);
+        Document oldest = mongoTemplate.findOne(pending, Document.class, collectionName);
+        return new OutboxBacklog(count, oldest != null && oldest.get(createdAtCol) instanceof Date created
+                ? created.toInstant() : null);
     }
 
     /**
-     * Fetch one pending record from MongoDB.
-     * MongoDB doesn't have FOR UPDATE SKIP LOCKED, but we can use findAndModify
-     * to atomically fetch and mark as processing.
+     * Claim the oldest pending record with a single findAndModify, so two
+     * relays never get the same document while its lease lasts.
      */
-    @Transactional
     public OutboxRecord fetchNextPending(String pendingStatus) {
-        Query query = new Query(Criteria.where(pendingStatusCol).is(pendingStatus))
-                .limit(1);
-        
-        org.bson.Document doc = mongoTemplate.findOne(query, org.bson.Document.class, collectionName);
-        
-        if (doc == null) {
-            return null;
+        return fetchNextPending(pendingStatus, 0, 1);
+    }
+
+    /** {@link #fetchNextPending(String)} restricted to one shard, see {@link #claimPending(String, int, int, int)}. */
+    @Override
+    public OutboxRecord fetchNextPending(String pendingStatus, int partition, int partitions) {
+        Date now = new Date();
+        Query query = new Query(claimable(pendingStatus, now, partition, partitions))
+                .with(Sort.by(idCol));
+        Update update = new Update()
+                .set(leaseOwnerCol, ownerId)
+                .set(leaseUntilCol, new Date(now.getTime() + leaseMs));
+
+        Document doc = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Document.class, collectionName);
+
+        return doc == null ? null : toRecord(doc);
+    }
+
+    /**
+     * Claim up to {@code limit} pending records, oldest id first, in three
+     * round trips: pick candidates, lease those still claimable under a fresh
+     * claim id, and read back what this claim won. Candidates taken by another
+     * relay in between are dropped by the conditional update, so the batch
+     * may come back short.
+     */
+    public List<OutboxRecord> claimPending(String pendingStatus, int limit) {
+        return claimPending(pendingStatus, limit, 0, 1);
+    }
+
+    /**
+     * {@link #claimPending(String, int)} restricted to the documents of shard
+     * {@code partition} out of {@code partitions} (at most 256). Documents are
+     * sharded by the {@code shardBucket} that {@link #insert} stores, a hash of
+     * the record's group key (partition key, else ordering key), so records
+     * sharing a key stay on one shard and keep their order across relays.
+     * Documents without a key, or written by something other than
+     * {@link #insert}, are sharded by the first two hex digits of their
+     * lower-case UUID id and have no order across shards.
+     */
+    @Override
+    public List<OutboxRecord> claimPending(String pendingStatus, int limit, int partition, int partitions) {
+        Date now = new Date();
+        Query candidates = new Query(claimable(pendingStatus, now, partition, partitions))
+                .with(Sort.by(idCol))
+                .limit(limit);
+        candidates.fields().include(idCol);
+        List<Object> ids = mongoTemplate.find(candidates, Document.class, collectionName).stream()
+                .map(doc -> doc.get(idCol))
+                .toList();
+        if (ids.isEmpty()) return List.of();
+
+        String claimId = UUID.randomUUID().toString();
+        Query lease = new Query(new Criteria().andOperator(
+                Criteria.where(idCol).in(ids), claimable(pendingStatus, now)));
+        Update update = new Update()
+                .set(leaseOwnerCol, ownerId)
+                .set(leaseUntilCol, new Date(now.getTime() + leaseMs))
+                .set(claimIdCol, claimId);
+        if (mongoTemplate.updateMulti(lease, update, collectionName).getModifiedCount() == 0) {
+            return List.of();
         }
-        
-//        UUID id = doc.get(idCol);
-        UUID id = UUID.fromString(doc.getString(idCol));
 
-        String payload = doc.getString(payloadCol);
-        
-        return new OutboxRecord(id, payload);
+        Query claimed = new Query(Criteria.where(claimIdCol).is(claimId))
+                .with(Sort.by(idCol));
+        return mongoTemplate.find(claimed, Document.class, collectionName).stream()
+                .map(this::toRecord)
+                .toList();
+    }
+
+    /**
+     * Insert new records with {@code status} in one insertMany, with every
+     * field configured for the relay. Joins the caller's transaction when a
+     * MongoTransactionManager has one open.
+     *
+     * @return documents inserted
+     */
+    public int insert(List<OutboxRecord> records, String status) {
+        if (records.isEmpty()) return 0;
+        List<Document> docs = new ArrayList<>(records.size());
+        for (OutboxRecord rec : records) {
+            // ids are stored as strings, see toRecord
+            Document doc = new Document(idCol, rec.getId().toString())
+                    .append(payloadCol, rec.getPayload())
+                    .append(pendingStatusCol, status)
+                    .append(attemptsCol, rec.getAttempts());
+            putField(doc, eventTypeCol, rec.getEventType());
+            putField(doc, sourceCol, rec.getSource());
+            putField(doc, aggregateIdCol, rec.getAggregateId());
+            putField(doc, partitionKeyCol, rec.getPartitionKey());
+            putField(doc, orderingKeyCol, rec.getOrderingKey());
+            putField(doc, createdAtCol, rec.getCreatedAt() == null ? null : Date.from(rec.getCreatedAt()));
+            doc.append(shardBucketCol, shardBucket(rec));
+            docs.add(doc);
+        }
+        return mongoTemplate.insert(docs, collectionName).size();
     }
 
     public void updateStatus(UUID id, String status) {
-        Query query = new Query(Criteria.where(idCol).is(id));
-        Update update = new Update().set(pendingStatusCol, status);
+        // ids are stored as strings, see toRecord
+        Query query = new Query(Criteria.where(idCol).is(id.toString()));
+        mongoTemplate.updateFirst(query, clearLease().set(pendingStatusCol, status), collectionName);
+    }
+
+    /** Set the status of all given records with a single updateMulti. */
+    @Override
+    public long updateStatus(Collection<UUID> ids, String status) {
+        if (ids.isEmpty()) return 0;
+        Query query = new Query(Criteria.where(idCol).in(keys(ids)));
+        return mongoTemplate.updateMulti(query, clearLease().set(pendingStatusCol, status), collectionName)
+                .getModifiedCount();
+    }
+
+    /** Mark records sent and stamp sentAt, which the purger ages them by. */
+    @Override
+    public long markSent(Collection<UUID> ids, String sentStatus) {
+        if (ids.isEmpty()) return 0;
+        Query query = new Query(Criteria.where(idCol).in(keys(ids)));
+        Update update = clearLease().set(pendingStatusCol, sentStatus).set(sentAtCol, new Date());
+        return mongoTemplate.updateMulti(query, update, collectionName).getModifiedCount();
+    }
+
+    /**
+     * Delete up to {@code limit} records sent before {@code cutoff}, copying
+     * them into {@code archiveCollection} first when it is not null. An
+     * archive copy that is already there (a purge interrupted between the
+     * two steps) is replaced.
+     *
+     * @return records removed from the outbox
+     */
+    @Override
+    public long purgeSent(String sentStatus, Instant cutoff, int limit, String archiveCollection) {
+        Query expired = new Query(Criteria.where(pendingStatusCol).is(sentStatus)
+                .and(sentAtCol).lt(Date.from(cutoff)))
+                .limit(limit);
+        List<Document> docs = mongoTemplate.find(expired, Document.class, collectionName);
+        if (docs.isEmpty()) return 0;
+        if (archiveCollection != null) {
+            docs.forEach(doc -> mongoTemplate.save(doc, archiveCollection));
+        }
+        List<Object> ids = docs.stream().map(doc -> doc.get(idCol)).toList();
+        return mongoTemplate.remove(new Query(Criteria.where(idCol).in(ids)), collectionName).getDeletedCount();
+    }
+
+    /**
+     * Partial index over the pending documents in claim order, so claims stay
+     * cheap however many sent documents the collection keeps.
+     */
+    public void ensurePendingIndex(String pendingStatus) {
+        mongoTemplate.indexOps(collectionName).ensureIndex(new Index()
+                .on(pendingStatusCol, Sort.Direction.ASC)
+                .on(idCol, Sort.Direction.ASC)
+                .named(collectionName + "_pending_idx")
+                .partial(PartialIndexFilter.of(Criteria.where(pendingStatusCol).is(pendingStatus))));
+    }
+
+    /**
+     * Give back leases this relay still holds, e.g. after a failed publish,
+     * so the records are retried on the next poll instead of after expiry.
+     */
+    @Override
+    public long releaseLeases(Collection<UUID> ids) {
+        if (ids.isEmpty()) return 0;
+        Query query = new Query(Criteria.where(idCol).in(keys(ids)).and(leaseOwnerCol).is(ownerId));
+        return mongoTemplate.updateMulti(query, clearLease(), collectionName).getModifiedCount();
+    }
+
+    /**
+     * Record a failed publish and give up the lease: store the attempt count
+     * and error, and either schedule the next attempt or move the document to
+     * another status.
+     */
+    @Override
+    public void recordFailure(UUID id, int attempts, Instant nextAttemptAt, String lastError, String status) {
+        Query query = new Query(Criteria.where(idCol).is(id.toString()));
+        Update update = clearLease()
+                .set(attemptsCol, attempts)
+                .set(nextAttemptCol, nextAttemptAt == null ? null : Date.from(nextAttemptAt))
+                .set(lastErrorCol, lastError)
+                .set(pendingStatusCol, status);
         mongoTemplate.updateFirst(query, update, collectionName);
     }
+
+    private Criteria claimable(String pendingStatus, Date now, int partition, int partitions) {
+        if (partitions <= 1) return claimable(pendingStatus, now);
+        List<Integer> buckets = new ArrayList<>();
+        List<Pattern> prefixes = new ArrayList<>();
+        for (int bucket = partition; bucket < ID_BUCKETS; bucket += partitions) {
+            buckets.add(bucket);
+            prefixes.add(Pattern.compile(String.format("^%02x", bucket)));
+        }
+        return new Criteria().andOperator(claimable(pendingStatus, now), new Criteria().orOperator(
+                Criteria.where(shardBucketCol).in(buckets),
+                Criteria.where(shardBucketCol).exists(false).and(idCol).in(prefixes)));
+    }
+
+    /** Hash of the group key, else the id prefix that documents without a bucket are sharded by. */
+    static int shardBucket(OutboxRecord rec) {
+        String key = OutboxMessageHeaders.groupKey(rec);
+        if (key == null) return Integer.parseInt(rec.getId().toString().substring(0, 2), 16);
+        return Math.floorMod(key.hashCode(), ID_BUCKETS);
+    }
+
+    /** Pending, due for an attempt, and either never leased or with a lease that ran out. */
+    private Criteria claimable(String pendingStatus, Date now) {
+        return Criteria.where(pendingStatusCol).is(pendingStatus)
+                .andOperator(
+                        new Criteria().orOperator(Criteria.where(leaseUntilCol).exists(false),
+                                Criteria.where(leaseUntilCol).lt(now)),
+                        new Criteria().orOperator(Criteria.where(nextAttemptCol).is(null),
+                                Criteria.where(nextAttemptCol).lte(now)));
+    }
+
+    private Update clearLease() {
+        return new Update().unset(leaseOwnerCol).unset(leaseUntilCol).unset(claimIdCol);
+    }
+
+    private OutboxRecord toRecord(Document doc) {
+        OutboxRecord rec = new OutboxRecord(UUID.fromString(doc.getString(idCol)), doc.getString(payloadCol));
+        if (doc.get(attemptsCol) instanceof Number attempts) rec.setAttempts(attempts.intValue());
+        if (eventTypeCol != null) rec.setEventType(asString(doc.get(eventTypeCol)));
+        if (sourceCol != null) rec.setSource(asString(doc.get(sourceCol)));
+        if (aggregateIdCol != null) rec.setAggregateId(asString(doc.get(aggregateIdCol)));
+        if (partitionKeyCol != null) rec.setPartitionKey(asString(doc.get(partitionKeyCol)));
+        if (orderingKeyCol != null) rec.setOrderingKey(asString(doc.get(orderingKeyCol)));
+        if (createdAtCol != null && doc.get(createdAtCol) instanceof Date createdAt) {
+            rec.setCreatedAt(createdAt.toInstant());
+        }
+        return rec;
+    }
+
+    /** A field can back several record fields; the first value set wins. */
+    private static void putField(Document doc, String field, Object value) {
+        if (field != null && value != null) doc.putIfAbsent(field, value);
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static List<String> keys(Collection<UUID> ids) {
+        return ids.stream().map(UUID::toString).toList();
+    }
 }
@@ -0,0 +1,119 @@
+package com.example.main.core;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Shard ownership through lease documents: {@code <collection>_shards} holds
+ * one document per claimed shard with its owner and lease expiry, and
+ * {@code <collection>_relays} one heartbeat per live relay. Leases are
+ * renewed every rebalance and lapse shardLeaseMs after a relay stops
+ * renewing them, which bounds how long a dead relay's shards stay unpolled.
+ * <p>
+ * Shards follow the partition or ordering key only when one of the two is
+ * mapped and the documents were written through the relay's writer; see
+ * {@link MongoOutboxRepository#claimPending(String, int, int, int)}.
+ */
+public class MongoShardOwnership extends OutboxShardOwnership {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoShardOwnership.class);
+
+    private static final String OWNER = "owner";
+    private static final String LEASE_UNTIL = "leaseUntil";
+
+    private final MongoTemplate mongoTemplate;
+    private final String shardCollection;
+    private final String relayCollection;
+    private final long leaseMs;
+
+    public MongoShardOwnership(MongoTemplate mongoTemplate, OutboxProperties props, OutboxMetrics metrics) {
+        super(props.getShards(), props.getShardRebalanceIntervalMs(), props.getRelayId(), metrics);
+        if (props.getShards() > MongoOutboxRepository.ID_BUCKETS) {
+            throw new IllegalStateException("outbox.shards is limited to " + MongoOutboxRepository.ID_BUCKETS
+                    + " for MongoDB: " + props.getShards());
+        }
+        if (props.getShardLeaseMs() <= props.getShardRebalanceIntervalMs()) {
+            throw new IllegalStateException("outbox.shard-lease-ms (" + props.getShardLeaseMs()
+                    + ") must exceed outbox.shard-rebalance-interval-ms (" + props.getShardRebalanceIntervalMs() + ")");
+        }
+        if (props.getPartitionKeyColumn() == null && props.getOrderingKeyColumn() == null) {
+            log.warn("Neither outbox.partition-key-column nor outbox.ordering-key-column is set: {} shards are"
+                    + " split by document id, so events of one key can be published out of order", props.getShards());
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.shardCollection = props.getTableName() + "_shards";
+        this.relayCollection = props.getTableName() + "_relays";
+        this.leaseMs = props.getShardLeaseMs();
+    }
+
+    @Override
+    protected long claimValidityMs() {
+        return leaseMs;
+    }
+
+    @Override
+    protected boolean renew(Set<Integer> claimed) {
+        Date now = new Date();
+        Date until = new Date(now.getTime() + leaseMs);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(getRelayId())),
+                new Update().set(LEASE_UNTIL, until), relayCollection);
+        if (claimed.isEmpty()) return true;
+
+        Query live = new Query(Criteria.where(OWNER).is(getRelayId()).and(LEASE_UNTIL).gt(now));
+        mongoTemplate.updateMulti(live, new Update().set(LEASE_UNTIL, until), shardCollection);
+        Set<Integer> renewed = new HashSet<>();
+        live = new Query(Criteria.where(OWNER).is(getRelayId()).and(LEASE_UNTIL).is(until));
+        live.fields().include("_id");
+        for (Document doc : mongoTemplate.find(live, Document.class, shardCollection)) {
+            renewed.add(doc.getInteger("_id"));
+        }
+        return renewed.containsAll(claimed);
+    }
+
+    @Override
+    protected int liveRelays() {
+        return (int) mongoTemplate.count(new Query(Criteria.where(LEASE_UNTIL).gt(new Date())), relayCollection);
+    }
+
+    @Override
+    protected boolean tryAcquire(int shard) {
+        Date now = new Date();
+        Query free = new Query(Criteria.where("_id").is(shard).orOperator(
+                Criteria.where(LEASE_UNTIL).lte(now),
+                Criteria.where(OWNER).is(getRelayId())));
+        Update claim = new Update().set(OWNER, getRelayId()).set(LEASE_UNTIL, new Date(now.getTime() + leaseMs));
+        try {
+            // upsert creates the shard's first lease; a live lease of another relay makes it a duplicate key
+            return mongoTemplate.findAndModify(free, claim, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    Document.class, shardCollection) != null;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void release(int shard) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(shard).and(OWNER).is(getRelayId())),
+                new Update().set(LEASE_UNTIL, new Date(0)), shardCollection);
+    }
+
+    @Override
+    protected void releaseAll() {
+        mongoTemplate.updateMulti(new Query(Criteria.where(OWNER).is(getRelayId())),
+                new Update().set(LEASE_UNTIL, new Date(0)), shardCollection);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(getRelayId())), relayCollection);
+    }
+}
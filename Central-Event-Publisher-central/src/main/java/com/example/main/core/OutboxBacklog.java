@@ -0,0 +1,12 @@
+package com.example.main.core;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of the records waiting to be published.
+ *
+ * @param oldestPendingAt creation time of the oldest pending record; null
+ *                        when nothing is pending or no creation time is known
+ */
+public record OutboxBacklog(long pending, Instant oldestPendingAt) {
+}
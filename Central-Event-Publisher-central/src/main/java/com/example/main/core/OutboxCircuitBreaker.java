@@ -0,0 +1,163 @@
+package com.example.main.core;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.ResourceAllocationException;
+
+/**
+ * Circuit breaker around the broker publish. After failureThreshold failed
+ * publishes in a row it opens and the relay stops claiming records, instead
+ * of claiming, failing and logging on every poll. After openMs one poll is let
+ * through as a probe; its success closes the breaker and wakes the poller,
+ * its failure opens it again for twice as long, up to openMaxMs. Only
+ * failures {@link #isBrokerFailure} counts are to be recorded; a record the
+ * broker or the client rejects says nothing about the broker.
+ */
+public class OutboxCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxCircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMs;
+    private final long openMaxMs;
+    private final OutboxMetrics metrics;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long currentOpenMs;
+    private long openUntil;
+    private boolean probing;
+
+    public OutboxCircuitBreaker(int failureThreshold, long openMs, long openMaxMs, OutboxMetrics metrics) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = openMs;
+        this.openMaxMs = Math.max(openMs, openMaxMs);
+        this.metrics = metrics;
+        this.currentOpenMs = openMs;
+        if (metrics != null) metrics.recordBreakerState(state);
+    }
+
+    /**
+     * Whether a poll may claim records. Once the open period is over the
+     * first caller becomes the probe; everyone else waits for its outcome.
+     */
+    public synchronized boolean allowClaim() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) return false;
+                transition(State.HALF_OPEN);
+                probing = true;
+                return true;
+            default:
+                if (probing) return false;
+                probing = true;
+                return true;
+        }
+    }
+
+    /** True while the caller of {@link #allowClaim()} holds the probe; it should claim little. */
+    public synchronized boolean isProbing() {
+        return state == State.HALF_OPEN && probing;
+    }
+
+    /** The probe found nothing to publish, so the next poll probes again. */
+    public synchronized void probeSkipped() {
+        if (state == State.HALF_OPEN) probing = false;
+    }
+
+    public void recordSuccess() {
+        boolean closed;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            closed = state == State.HALF_OPEN;
+            if (closed) {
+                transition(State.CLOSED);
+                probing = false;
+                currentOpenMs = openMs;
+            }
+        }
+        if (closed) {
+            log.info("Outbox broker publishes succeed again, circuit breaker closed");
+            closeListeners.forEach(Runnable::run);
+        }
+    }
+
+    public synchronized void recordFailure(Throwable failure) {
+        if (state == State.HALF_OPEN) {
+            currentOpenMs = Math.min(openMaxMs, currentOpenMs * 2);
+            open("probe failed", failure);
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open(consecutiveFailures + " publishes failed in a row", failure);
+        }
+    }
+
+    /**
+     * Whether a publish failure is about the broker connection rather than the
+     * record: an I/O or transport failure, a closed connection or session
+     * (jakarta.jms.IllegalStateException), a broker out of resources, or sends
+     * the broker did not confirm in time (TimeoutException). Anything else,
+     * e.g. a message that cannot be built or is refused on its own, is a
+     * failure of that record.
+     */
+    public static boolean isBrokerFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = next(cause)) {
+            if (cause instanceof IOException
+                    || cause instanceof TimeoutException
+                    || cause instanceof jakarta.jms.IllegalStateException
+                    || cause instanceof ResourceAllocationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(Throwable cause) {
+        Throwable next = cause.getCause();
+        if (next == null && cause instanceof JMSException jms) next = jms.getLinkedException();
+        return next;
+    }
+
+    /** Milliseconds until the next probe while open, else 0. */
+    public synchronized long millisUntilProbe() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Run when the breaker closes, e.g. to drain at once instead of waiting out a backoff. */
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
+    private void open(String reason, Throwable failure) {
+        transition(State.OPEN);
+        probing = false;
+        consecutiveFailures = 0;
+        openUntil = System.currentTimeMillis() + currentOpenMs;
+        log.warn("Outbox circuit breaker open for {} ms ({}): {}", currentOpenMs, reason, failure.toString());
+    }
+
+    private void transition(State next) {
+        state = next;
+        if (metrics != null) metrics.recordBreakerState(next);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.main.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+/**
+ * Several outbox events packed into one JMS message, so the broker handles
+ * one message per envelope instead of one per event.
+ * <p>
+ * An envelope is a {@link BytesMessage} with the {@value #ENVELOPE_PROPERTY}
+ * property set to the format version and {@value #COUNT_PROPERTY} to the
+ * number of events. Its body, deflated when {@value #ENCODING_PROPERTY} is
+ * "deflate", is an index followed by the payloads:
+ * <pre>
+ * int count
+ * count x (long idMostSigBits, long idLeastSigBits, int payloadLength)
+ * count x UTF-8 payload bytes
+ * </pre>
+ * Every event keeps its outbox id, so consumers can still deduplicate.
+ */
+public final class OutboxEnvelope {
+
+    public static final String ENVELOPE_PROPERTY = "OutboxEnvelope";
+    public static final String COUNT_PROPERTY = "OutboxEventCount";
+    public static final String ENCODING_PROPERTY = "OutboxEncoding";
+    public static final int VERSION = 1;
+
+    private static final String DEFLATE = "deflate";
+    private static final String IDENTITY = "identity";
+    /** bytes of one index entry */
+    private static final int INDEX_ENTRY = 8 + 8 + 4;
+
+    private OutboxEnvelope() {
+    }
+
+    /**
+     * Split records into envelopes of at most {@code maxEvents} events and
+     * about {@code maxBytes} of uncompressed payload; a single larger record
+     * still gets an envelope of its own.
+     */
+    public static List<List<OutboxRecord>> partition(List<OutboxRecord> records, int maxEvents, int maxBytes) {
+        List<List<OutboxRecord>> envelopes = new ArrayList<>();
+        List<OutboxRecord> current = new ArrayList<>();
+        long bytes = 0;
+        for (OutboxRecord rec : records) {
+            int size = INDEX_ENTRY + utf8Length(rec.getPayload());
+            if (!current.isEmpty() && (current.size() >= maxEvents || bytes + size > maxBytes)) {
+                envelopes.add(current);
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(rec);
+            bytes += size;
+        }
+        if (!current.isEmpty()) envelopes.add(current);
+        return envelopes;
+    }
+
+    /**
+     * Like {@link #partition(List, int, int)}, but with {@code byGroup} an
+     * envelope only holds records of one message group (see
+     * {@link OutboxMessageHeaders#groupKey}), so each envelope carries its
+     * group's JMSXGroupID. Records keep their order within a group; groups
+     * follow each other in the order they first appear.
+     */
+    public static List<List<OutboxRecord>> partition(List<OutboxRecord> records, int maxEvents, int maxBytes,
+                                                     boolean byGroup) {
+        if (!byGroup) return partition(records, maxEvents, maxBytes);
+        Map<String, List<OutboxRecord>> groups = new LinkedHashMap<>();
+        for (OutboxRecord rec : records) {
+            groups.computeIfAbsent(OutboxMessageHeaders.groupKey(rec), key -> new ArrayList<>()).add(rec);
+        }
+        List<List<OutboxRecord>> envelopes = new ArrayList<>();
+        for (List<OutboxRecord> group : groups.values()) {
+            envelopes.addAll(partition(group, maxEvents, maxBytes));
+        }
+        return envelopes;
+    }
+
+    public static BytesMessage createMessage(Session session, List<OutboxRecord> events, boolean compress)
+            throws JMSException {
+        BytesMessage message = session.createBytesMessage();
+        message.setIntProperty(ENVELOPE_PROPERTY, VERSION);
+        message.setIntProperty(COUNT_PROPERTY, events.size());
+        message.setStringProperty(ENCODING_PROPERTY, compress ? DEFLATE : IDENTITY);
+        message.writeBytes(encode(events, compress));
+        return message;
+    }
+
+    static byte[] encode(List<OutboxRecord> events, boolean compress) {
+        List<byte[]> payloads = new ArrayList<>(events.size());
+        int total = 4 + events.size() * INDEX_ENTRY;
+        for (OutboxRecord event : events) {
+            byte[] payload = event.getPayload().getBytes(StandardCharsets.UTF_8);
+            payloads.add(payload);
+            total += payload.length;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(compress ? total / 4 : total);
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try (DataOutputStream out = new DataOutputStream(compress
+                ? new DeflaterOutputStream(buffer, deflater, 8192) : buffer)) {
+            out.writeInt(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                UUID id = events.get(i).getId();
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                out.writeInt(payloads.get(i).length);
+            }
+            for (byte[] payload : payloads) {
+                out.write(payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (deflater != null) deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Nothing is sized by the count or lengths the body claims, only by what
+     * it actually holds, so a corrupt envelope fails instead of allocating.
+     */
+    static List<OutboxRecord> decode(byte[] body, boolean compressed) {
+        InputStream raw = new ByteArrayInputStream(body);
+        try (DataInputStream in = new DataInputStream(compressed ? new InflaterInputStream(raw) : raw)) {
+            int count = in.readInt();
+            if (count < 0 || (!compressed && (long) count * INDEX_ENTRY > body.length - 4)) {
+                throw new IOException("Event count " + count + " does not fit an envelope of " + body.length
+                        + " bytes");
+            }
+            int expected = Math.min(count, body.length / INDEX_ENTRY + 1);
+            List<UUID> ids = new ArrayList<>(expected);
+            List<Integer> lengths = new ArrayList<>(expected);
+            for (int i = 0; i < count; i++) {
+                ids.add(new UUID(in.readLong(), in.readLong()));
+                int length = in.readInt();
+                if (length < 0) throw new IOException("Negative payload length " + length + " of event " + i);
+                lengths.add(length);
+            }
+            List<OutboxRecord> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                // reads in chunks, so a length past the end of the body fails without allocating it
+                byte[] payload = in.readNBytes(lengths.get(i));
+                if (payload.length != lengths.get(i)) {
+                    throw new EOFException("Payload of event " + i + " is cut short at " + payload.length + " of "
+                            + lengths.get(i) + " bytes");
+                }
+                events.add(new OutboxRecord(ids.get(i), new String(payload, StandardCharsets.UTF_8)));
+            }
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed outbox envelope", e);
+        }
+    }
+
+    public static boolean isEnvelope(Message message) throws JMSException {
+        return message instanceof BytesMessage && message.propertyExists(ENVELOPE_PROPERTY);
+    }
+
+    /**
+     * The events carried by a message: every event of an envelope, or the one
+     * event of a plain text message (its id is null unless the publisher set
+     * one). Consumers can use this for both kinds of message.
+     */
+    public static List<OutboxRecord> unpack(Message message) throws JMSException {
+        if (isEnvelope(message)) {
+            int version = message.getIntProperty(ENVELOPE_PROPERTY);
+            if (version != VERSION) {
+                throw new JMSException("Unsupported outbox envelope version " + version);
+            }
+            BytesMessage bytes = (BytesMessage) message;
+            byte[] body = new byte[(int) bytes.getBodyLength()];
+            bytes.readBytes(body);
+            return decode(body, DEFLATE.equals(message.getStringProperty(ENCODING_PROPERTY)));
+        }
+        if (message instanceof TextMessage text) {
+            return List.of(new OutboxRecord(null, text.getText()));
+        }
+        throw new JMSException("Not an outbox message: " + message.getClass().getName());
+    }
+
+    private static int utf8Length(String s) {
+        // upper bound is fine for sizing; exact for the ASCII payloads we carry
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+}
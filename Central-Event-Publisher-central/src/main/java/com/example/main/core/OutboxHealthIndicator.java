@@ -0,0 +1,60 @@
+package com.example.main.core;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Relay health from the latest backlog sample: DOWN when the oldest pending
+ * record is older than outbox.health-max-lag-ms, or when the backlog has not
+ * been sampled for several intervals (the database is unreachable).
+ */
+public class OutboxHealthIndicator extends AbstractHealthIndicator {
+
+    /** sample intervals without a fresh sample before the backlog counts as unknown */
+    private static final int STALE_SAMPLES = 3;
+
+    private final OutboxMetrics metrics;
+    private final OutboxProperties props;
+
+    public OutboxHealthIndicator(OutboxMetrics metrics, OutboxProperties props) {
+        super("Outbox health check failed");
+        this.metrics = metrics;
+        this.props = props;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        OutboxBacklog backlog = metrics.getBacklog();
+        Instant sampledAt = metrics.getBacklogSampledAt();
+        builder.withDetail("table", String.valueOf(props.getTableName()));
+        if (metrics.getBreakerState() != null) {
+            builder.withDetail("circuitBreaker", metrics.getBreakerState().name());
+        }
+        if (backlog == null) {
+            builder.unknown().withDetail("reason", "backlog not sampled yet");
+            return;
+        }
+        builder.withDetail("pending", backlog.pending())
+                .withDetail("sampledAt", sampledAt.toString());
+
+        double lagMs = metrics.oldestPendingAgeMs();
+        if (!Double.isNaN(lagMs)) {
+            builder.withDetail("oldestPendingAgeMs", (long) lagMs)
+                    .withDetail("maxLagMs", props.getHealthMaxLagMs());
+        }
+
+        Duration sinceSample = Duration.between(sampledAt, Instant.now());
+        if (sinceSample.toMillis() > STALE_SAMPLES * props.getLagSampleIntervalMs()) {
+            builder.down().withDetail("reason", "backlog sample is " + sinceSample.toSeconds() + "s old");
+        } else if (!Double.isNaN(lagMs) && lagMs > props.getHealthMaxLagMs()) {
+            builder.down().withDetail("reason", "oldest pending record exceeds max lag");
+        } else {
+            builder.up();
+        }
+    }
+}
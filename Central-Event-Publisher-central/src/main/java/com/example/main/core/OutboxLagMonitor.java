@@ -0,0 +1,37 @@
+package com.example.main.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Samples the outbox backlog into {@link OutboxMetrics} on a fixed delay,
+ * so scraping the gauges or the health endpoint never queries the database.
+ */
+public class OutboxLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxLagMonitor.class);
+
+    private final OutboxStore store;
+    private final OutboxProperties props;
+    private final OutboxMetrics metrics;
+
+    public OutboxLagMonitor(OutboxStore store, OutboxProperties props, OutboxMetrics metrics) {
+        this.store = store;
+        this.props = props;
+        this.metrics = metrics;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.lag-sample-interval-ms:10000}")
+    public void sample() {
+        try {
+            metrics.recordBacklog(store.pendingBacklog(props.getPendingStatus()));
+        } catch (RuntimeException e) {
+            // the last sample goes stale, which the health indicator reports
+            log.warn("Could not sample the outbox backlog: {}", e.getMessage());
+            metrics.recordFailure(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.main.core;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+
+/**
+ * JMS properties carrying a record's metadata, so brokers can filter on them
+ * with selectors such as {@code eventType = 'ORDER_RECEIVED'}.
+ */
+public final class OutboxMessageHeaders {
+
+    public static final String OUTBOX_ID = "outboxId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String SOURCE = "source";
+    public static final String AGGREGATE_ID = "aggregateId";
+    public static final String CREATED_AT = "createdAt";
+    public static final String GROUP_ID = "JMSXGroupID";
+
+    private OutboxMessageHeaders() {
+    }
+
+    /** Set the properties of one record; unmapped metadata is left out. */
+    public static void apply(Message message, OutboxRecord rec, boolean messageGroups) throws JMSException {
+        if (rec.getId() != null) message.setStringProperty(OUTBOX_ID, rec.getId().toString());
+        apply(message, List.of(rec), messageGroups);
+    }
+
+    /**
+     * Set the properties shared by every record of an envelope. A value that
+     * differs between the records is left out, so a selector only matches an
+     * envelope when it matches all of its events. For the group id that would
+     * break ordering, so envelopes are partitioned by group when message
+     * groups are on.
+     */
+    public static void apply(Message message, List<OutboxRecord> records, boolean messageGroups)
+            throws JMSException {
+        String eventType = common(records, OutboxRecord::getEventType);
+        if (eventType != null) {
+            message.setJMSType(eventType);
+            message.setStringProperty(EVENT_TYPE, eventType);
+        }
+        String source = common(records, OutboxRecord::getSource);
+        if (source != null) message.setStringProperty(SOURCE, source);
+        String aggregateId = common(records, OutboxRecord::getAggregateId);
+        if (aggregateId != null) message.setStringProperty(AGGREGATE_ID, aggregateId);
+        if (records.size() == 1 && records.get(0).getCreatedAt() != null) {
+            message.setLongProperty(CREATED_AT, records.get(0).getCreatedAt().toEpochMilli());
+        }
+        if (messageGroups) {
+            String group = common(records, OutboxMessageHeaders::groupKey);
+            if (group != null) message.setStringProperty(GROUP_ID, group);
+        }
+    }
+
+    /** The record's JMSXGroupID with message groups on: its partition key, else its ordering key. */
+    public static String groupKey(OutboxRecord rec) {
+        return rec.getPartitionKey() != null ? rec.getPartitionKey() : rec.getOrderingKey();
+    }
+
+    private static String common(List<OutboxRecord> records, Function<OutboxRecord, String> value) {
+        String first = value.apply(records.get(0));
+        if (first == null) return null;
+        for (OutboxRecord rec : records) {
+            if (!Objects.equals(first, value.apply(rec))) return null;
+        }
+        return first;
+    }
+}
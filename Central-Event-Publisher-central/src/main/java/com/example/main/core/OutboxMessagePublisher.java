@@ -1,9 +1,38 @@
 package com.example.main.core;
 
+import java.util.List;
+
 
 public interface OutboxMessagePublisher {
     /**
      * Publish payload to MQ. Throw exception on failure.
      */
     void publish(String payload) throws Exception;
+
+    /**
+     * Publish one record with its metadata. The default publishes only the
+     * payload.
+     */
+    default void publish(OutboxRecord record) throws Exception {
+        publish(record.getPayload());
+    }
+
+    /**
+     * Publish several payloads as one unit: either all are sent or the call
+     * throws. The default sends them one by one.
+     */
+    default void publishBatch(List<String> payloads) throws Exception {
+        for (String payload : payloads) {
+            publish(payload);
+        }
+    }
+
+    /**
+     * Publish claimed records as one unit, for publishers that need more than
+     * the payload (ids, metadata). The default publishes the payloads with
+     * {@link #publishBatch(List)}.
+     */
+    default void publishRecords(List<OutboxRecord> records) throws Exception {
+        publishBatch(records.stream().map(OutboxRecord::getPayload).toList());
+    }
 }
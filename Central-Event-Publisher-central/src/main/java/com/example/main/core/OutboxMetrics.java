@@ -0,0 +1,215 @@
+package com.example.main.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.NestedExceptionUtils;
+
+import com.example.main.config.OutboxProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters of the outbox relay, tagged with the outbox table and
+ * database type so several relays can share one registry. Poll and claim
+ * meters also carry the worker index.
+ * <ul>
+ * <li>{@code outbox.pending}, {@code outbox.pending.oldest.age}: backlog, sampled by {@link OutboxLagMonitor}</li>
+ * <li>{@code outbox.published}: records published; its rate is events per second</li>
+ * <li>{@code outbox.claim}, {@code outbox.claim.size}: claim query latency and batch size</li>
+ * <li>{@code outbox.publish}: broker publish latency per call, by mode (single or batch)</li>
+ * <li>{@code outbox.failures}: failed polls and publishes, by exception class</li>
+ * <li>{@code outbox.shards.owned}: shards this relay polls, with shard ownership</li>
+ * <li>{@code outbox.breaker.state}, {@code outbox.spooled}: broker circuit breaker and local spool</li>
+ * </ul>
+ */
+public class OutboxMetrics {
+
+    /** weight of the latest poll in the recent-yield average */
+    private static final double YIELD_ALPHA = 0.2;
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Counter emptyPolls;
+    private final Counter productivePolls;
+    private final Counter notifications;
+    private final Counter purged;
+    private final Timer singlePublish;
+    private final Timer batchPublish;
+    private final Map<Integer, WorkerMeters> workers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+    private volatile double recentYield;
+    private volatile OutboxBacklog backlog;
+    private volatile Instant backlogSampledAt;
+    private final AtomicInteger ownedShards = new AtomicInteger(-1);
+    private volatile OutboxCircuitBreaker.State breakerState;
+
+    public OutboxMetrics(MeterRegistry registry, OutboxProperties props) {
+        this.registry = registry;
+        this.tags = Tags.of("table", String.valueOf(props.getTableName()),
+                "db", props.getDatabaseType().name());
+        emptyPolls = Counter.builder("outbox.polls").tags(tags).tag("result", "empty").register(registry);
+        productivePolls = Counter.builder("outbox.polls").tags(tags).tag("result", "work").register(registry);
+        notifications = Counter.builder("outbox.notifications").tags(tags)
+                .description("Push wake-ups received (LISTEN/NOTIFY or change stream)")
+                .register(registry);
+        purged = Counter.builder("outbox.purged").tags(tags)
+                .description("Sent records deleted or archived by the purger")
+                .register(registry);
+        singlePublish = publishTimer("single");
+        batchPublish = publishTimer("batch");
+        Gauge.builder("outbox.pending", this, m -> m.backlog == null ? Double.NaN : m.backlog.pending())
+                .tags(tags)
+                .description("Records waiting to be published")
+                .register(registry);
+        Gauge.builder("outbox.pending.oldest.age", this, OutboxMetrics::oldestPendingAgeMs)
+                .tags(tags).baseUnit("milliseconds")
+                .description("Age of the oldest record waiting to be published")
+                .register(registry);
+        Gauge.builder("outbox.poll.yield", this, m -> m.recentYield)
+                .tags(tags)
+                .description("Moving average of records published per poll")
+                .register(registry);
+    }
+
+    public void recordPoll(int worker, int published, long nextDelayMs) {
+        (published > 0 ? productivePolls : emptyPolls).increment();
+        recentYield += YIELD_ALPHA * (published - recentYield);
+        WorkerMeters meters = worker(worker);
+        meters.published.increment(published);
+        meters.pollIntervalMs.set(nextDelayMs);
+    }
+
+    /**
+     * One claim statement. With several workers, claim time going up or
+     * batches coming back short while records are pending points at
+     * contention on the outbox rows.
+     */
+    public void recordClaim(int worker, int claimed, long nanos) {
+        WorkerMeters meters = worker(worker);
+        meters.claimTime.record(nanos, TimeUnit.NANOSECONDS);
+        meters.claimSize.record(claimed);
+    }
+
+    public void recordNotifications(int count) {
+        notifications.increment(count);
+    }
+
+    public void recordPurged(long count) {
+        purged.increment(count);
+    }
+
+    public void recordPublish(boolean batch, long nanos) {
+        (batch ? batchPublish : singlePublish).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(Throwable failure) {
+        String cause = NestedExceptionUtils.getMostSpecificCause(failure).getClass().getSimpleName();
+        failures.computeIfAbsent(cause, c -> Counter.builder("outbox.failures").tags(tags).tag("cause", c)
+                .description("Failed polls and publishes")
+                .register(registry)).increment();
+    }
+
+    /** Shards this relay polls after a rebalance; the gauge appears with the first call. */
+    public void recordOwnedShards(int owned) {
+        if (ownedShards.getAndSet(owned) == -1) {
+            Gauge.builder("outbox.shards.owned", ownedShards, AtomicInteger::get)
+                    .tags(tags)
+                    .description("Outbox shards owned by this relay")
+                    .register(registry);
+        }
+    }
+
+    /** Breaker state as a gauge: 0 closed, 1 half-open, 2 open. */
+    public void recordBreakerState(OutboxCircuitBreaker.State state) {
+        if (breakerState == null) {
+            Gauge.builder("outbox.breaker.state", this, m -> m.breakerState == OutboxCircuitBreaker.State.OPEN ? 2
+                            : m.breakerState == OutboxCircuitBreaker.State.HALF_OPEN ? 1 : 0)
+                    .tags(tags)
+                    .description("Broker circuit breaker: 0 closed, 1 half-open, 2 open")
+                    .register(registry);
+        }
+        breakerState = state;
+    }
+
+    /** Null without a circuit breaker. */
+    public OutboxCircuitBreaker.State getBreakerState() {
+        return breakerState;
+    }
+
+    public void registerSpool(OutboxSpool spool) {
+        Gauge.builder("outbox.spooled", spool, OutboxSpool::getRecords)
+                .tags(tags)
+                .description("Records waiting in the local spool")
+                .register(registry);
+    }
+
+    public void recordBacklog(OutboxBacklog backlog) {
+        this.backlog = backlog;
+        this.backlogSampledAt = Instant.now();
+    }
+
+    /** Latest backlog sample, or null before the first one. */
+    public OutboxBacklog getBacklog() {
+        return backlog;
+    }
+
+    public Instant getBacklogSampledAt() {
+        return backlogSampledAt;
+    }
+
+    /** Age of the oldest pending record at the last sample; 0 with nothing pending, NaN if unknown. */
+    public double oldestPendingAgeMs() {
+        OutboxBacklog current = backlog;
+        if (current == null) return Double.NaN;
+        if (current.pending() == 0) return 0;
+        if (current.oldestPendingAt() == null) return Double.NaN;
+        return Math.max(0, Duration.between(current.oldestPendingAt(), Instant.now()).toMillis());
+    }
+
+    private Timer publishTimer(String mode) {
+        return Timer.builder("outbox.publish").tags(tags).tag("mode", mode)
+                .description("Time to publish to the broker and get it confirmed")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private WorkerMeters worker(int worker) {
+        return workers.computeIfAbsent(worker, WorkerMeters::new);
+    }
+
+    private final class WorkerMeters {
+
+        final Counter published;
+        final AtomicLong pollIntervalMs = new AtomicLong();
+        final Timer claimTime;
+        final DistributionSummary claimSize;
+
+        WorkerMeters(int worker) {
+            Tags workerTags = tags.and("worker", Integer.toString(worker));
+            published = Counter.builder("outbox.published").tags(workerTags)
+                    .description("Records published")
+                    .register(registry);
+            Gauge.builder("outbox.poll.interval", pollIntervalMs, AtomicLong::get)
+                    .tags(workerTags).baseUnit("milliseconds")
+                    .description("Delay before the next outbox poll")
+                    .register(registry);
+            claimTime = Timer.builder("outbox.claim").tags(workerTags)
+                    .description("Time to claim pending records")
+                    .register(registry);
+            claimSize = DistributionSummary.builder("outbox.claim.size").tags(workerTags)
+                    .description("Records returned per claim")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.main.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Drives {@link OutboxProcessor} with an adaptive delay instead of a fixed
+ * rate. A poll that publishes something is followed straight away by the
+ * next one; empty polls back off exponentially with jitter up to
+ * maxPollingIntervalMs, and the first productive poll resets the backoff.
+ * {@link #wakeUp()} cuts a backoff short when something announces new rows.
+ * <p>
+ * With outbox.workers above 1 each worker polls its own partition of the
+ * ordering key with its own backoff. A worker never runs two polls at once,
+ * so records sharing a key are published in order while different keys go
+ * out concurrently.
+ * <p>
+ * With {@link OutboxShardOwnership} the workers poll only the shards this
+ * relay owns, each shard always by the same worker, and poll straight away
+ * when a rebalance hands the relay new shards.
+ */
+public class OutboxPoller implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxPoller.class);
+
+    private final OutboxProcessor processor;
+    private final OutboxProperties props;
+    private final OutboxMetrics metrics;
+    private final OutboxShardOwnership shards;
+
+    private ScheduledExecutorService executor;
+    private List<Worker> workers = List.of();
+    private volatile boolean running;
+
+    public OutboxPoller(OutboxProcessor processor, OutboxProperties props, OutboxMetrics metrics) {
+        this(processor, props, metrics, null);
+    }
+
+    /** @param shards polls only the shards it owns; null polls the whole outbox */
+    public OutboxPoller(OutboxProcessor processor, OutboxProperties props, OutboxMetrics metrics,
+                        @Nullable OutboxShardOwnership shards) {
+        this.processor = processor;
+        this.props = props;
+        this.metrics = metrics;
+        this.shards = shards;
+        if (shards != null) shards.onShardsAcquired(this::wakeUp);
+        // drain at once when the broker is back rather than after the idle backoff
+        if (processor.getCircuitBreaker() != null) processor.getCircuitBreaker().onClose(this::wakeUp);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        if (props.getMinPollingIntervalMs() > props.getMaxPollingIntervalMs()) {
+            throw new IllegalStateException("outbox.min-polling-interval-ms (" + props.getMinPollingIntervalMs()
+                    + ") exceeds outbox.max-polling-interval-ms (" + props.getMaxPollingIntervalMs() + ")");
+        }
+        int count = processor.supportsPartitions() ? Math.max(1, props.getWorkers()) : 1;
+        if (count < props.getWorkers()) {
+            log.warn("outbox.workers={} is only supported for JDBC outboxes; polling with one worker",
+                    props.getWorkers());
+        }
+        // more workers than shards would have nothing to poll
+        if (shards != null) count = Math.min(count, shards.getShardCount());
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(count,
+                new CustomizableThreadFactory("outbox-poller-"));
+        // stop() should not sit out a backed-off poll that would return at once anyway
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor = pool;
+        List<Worker> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            created.add(new Worker(i, count));
+        }
+        workers = List.copyOf(created);
+        running = true;
+        workers.forEach(worker -> executor.execute(worker::poll));
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Poll now instead of waiting out the current backoff. Any number of calls
+     * before the wake-up runs collapse into one per worker, so a storm of
+     * notifications costs a single drain.
+     */
+    public void wakeUp() {
+        if (!running) return;
+        workers.forEach(Worker::wakeUp);
+    }
+
+    /** One partition's poll loop; at most one of its polls runs at a time. */
+    private final class Worker {
+
+        private final int index;
+        private final int count;
+        private final AtomicBoolean wakeUpQueued = new AtomicBoolean();
+        private final Object lock = new Object();
+        // guarded by lock; a delayed poll only runs if nothing claimed its turn first
+        private ScheduledFuture<?> scheduledPoll;
+        private long scheduledTurn;
+        private boolean waiting;
+        private long idleIntervalMs;
+
+        Worker(int index, int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        void wakeUp() {
+            if (!wakeUpQueued.compareAndSet(false, true)) return;
+            executor.execute(() -> {
+                wakeUpQueued.set(false);
+                synchronized (lock) {
+                    // a poll that is running or queued to run now will see the new rows anyway
+                    if (!waiting) return;
+                    waiting = false;
+                    scheduledTurn++;
+                    scheduledPoll.cancel(false);
+                    idleIntervalMs = 0;
+                }
+                poll();
+            });
+        }
+
+        void poll() {
+            int published = 0;
+            try {
+                published = shards == null ? processor.processOnce(index, count) : pollOwnedShards();
+            } catch (RuntimeException e) {
+                log.error("Outbox poll failed (worker {})", index, e);
+            }
+
+            synchronized (lock) {
+                long delayMs = nextDelayMs(published);
+                long probeInMs = processor.millisUntilProbe();
+                // while the breaker is open there is no point polling before the probe is due
+                if (published == 0 && probeInMs > 0) delayMs = Math.max(props.getMinPollingIntervalMs(), probeInMs);
+                metrics.recordPoll(index, published, delayMs);
+                if (!running) return;
+                if (delayMs == 0) {
+                    executor.execute(this::poll);
+                } else {
+                    long turn = ++scheduledTurn;
+                    waiting = true;
+                    scheduledPoll = executor.schedule(() -> pollIfStillDue(turn), delayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        /** The owned shards that fall to this worker, one after the other. */
+        private int pollOwnedShards() {
+            int published = 0;
+            for (int shard : shards.ownedShards()) {
+                // re-checked per shard: a rebalance may have started giving it up
+                if (shard % count == index && shards.owns(shard)) {
+                    published += processor.processOnce(shard, shards.getShardCount());
+                }
+            }
+            return published;
+        }
+
+        private void pollIfStillDue(long turn) {
+            synchronized (lock) {
+                // a wake-up got here first and has already polled
+                if (!waiting || turn != scheduledTurn) return;
+                waiting = false;
+            }
+            poll();
+        }
+
+        long nextDelayMs(int published) {
+            if (published > 0) {
+                idleIntervalMs = 0;
+                return 0;
+            }
+            long min = props.getMinPollingIntervalMs();
+            long max = props.getMaxPollingIntervalMs();
+            idleIntervalMs = idleIntervalMs == 0
+                    ? Math.max(1, min)
+                    : Math.min(max, (long) (idleIntervalMs * props.getPollingBackoffMultiplier()));
+
+            // spread the delay so relays started together do not poll in lockstep
+            double jitter = props.getPollingJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            return Math.max(min, Math.min(max, Math.round(idleIntervalMs * (1 + jitter))));
+        }
+    }
+}
@@ -2,10 +2,20 @@ package com.example.main.core;
 
 
 import org.slf4j.Logger;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.lang.Nullable;
 
 import com.example.main.config.OutboxProperties;
@@ -14,49 +24,363 @@ public class OutboxProcessor {
 
     private static final Logger log = LoggerFactory.getLogger(OutboxProcessor.class);
 
-    private final GenericOutboxRepository jdbcRepository;
-    private final MongoOutboxRepository mongoRepository;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OutboxStore store;
     private final OutboxMessagePublisher publisher;
     private final OutboxProperties props;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxMetrics metrics;
+    private final OutboxCircuitBreaker breaker;
+    private final OutboxSpool spool;
 
-    public OutboxProcessor(GenericOutboxRepository jdbcRepository,
-                           @Nullable MongoOutboxRepository mongoRepository,
+    /**
+     * @param transactionManager holds the row locks of a claimed batch until
+     *                           it is published and marked; without it the
+     *                           locks end with the claim statement
+     * @param breaker            stops claims while the broker keeps failing
+     * @param spool              takes the batches in hand when the breaker
+     *                           opens, marking them spooledStatus; needs the
+     *                           breaker
+     */
+    public OutboxProcessor(OutboxStore store,
                            OutboxMessagePublisher publisher,
-                           OutboxProperties props) {
-        this.jdbcRepository = jdbcRepository;
-        this.mongoRepository = mongoRepository;
+                           OutboxProperties props,
+                           @Nullable PlatformTransactionManager transactionManager,
+                           @Nullable OutboxMetrics metrics,
+                           @Nullable OutboxCircuitBreaker breaker,
+                           @Nullable OutboxSpool spool) {
+        this.store = store;
         this.publisher = publisher;
         this.props = props;
+        this.transactionTemplate = transactionManager == null || !store.locksClaimedRows()
+                ? null : new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        this.breaker = breaker;
+        this.spool = breaker == null ? null : spool;
+    }
+
+    /** One poll over the whole outbox. */
+    public int processOnce() {
+        return processOnce(0, 1);
     }
 
-    @Scheduled(fixedDelayString = "${outbox.polling-interval-ms:3000}")
-    public void processOnce() {
+    /**
+     * One poll of one ordering-key partition, driven by {@link OutboxPoller}.
+     * Outboxes without {@link OutboxStore#locksClaimedRows() row locks} are
+     * partitioned only for shard ownership.
+     *
+     * @return number of records published
+     */
+    public int processOnce(int partition, int partitions) {
+        if (breaker != null && !breaker.allowClaim()) return 0;
         try {
-            OutboxRecord rec = null;
-            
-            // Use the appropriate repository based on database type
-            if (props.getDatabaseType() == OutboxProperties.DatabaseType.MONGODB && mongoRepository != null) {
-                rec = mongoRepository.fetchNextPending(props.getPendingStatus());
-            } else if (jdbcRepository != null) {
-                rec = jdbcRepository.fetchNextPending(props.getPendingStatus());
-            }
-            
-            if (rec == null) return;
-
-            log.info("Got outbox id={} payload={}", rec.getId(), rec.getPayload());
-            publisher.publish(rec.getPayload());
-            
-            // Update status using the appropriate repository
-            if (props.getDatabaseType() == OutboxProperties.DatabaseType.MONGODB && mongoRepository != null) {
-                mongoRepository.updateStatus(rec.getId(), props.getSentStatus());
-            } else if (jdbcRepository != null) {
-                jdbcRepository.updateStatus(rec.getId(), props.getSentStatus());
+            // spooled records go out before anything newer is claimed
+            if (spool != null && !spool.isEmpty()) return drainSpool();
+            return props.getBatchSize() > 1 ? drainBatches(partition, partitions) : processOne(partition, partitions);
+        } finally {
+            // a probe that published nothing has not told us anything about the broker
+            if (breaker != null && breaker.isProbing()) breaker.probeSkipped();
+        }
+    }
+
+    private int processOne(int partition, int partitions) {
+        OutboxRecord rec = null;
+        try {
+            long start = System.nanoTime();
+            rec = store.fetchNextPending(props.getPendingStatus(), partition, partitions);
+            recordClaim(partition, rec == null ? 0 : 1, start);
+
+            if (rec == null) return 0;
+
+            log.debug("Got outbox id={}", rec.getId());
+            try {
+                publish(rec);
+            } catch (Exception e) {
+                if (spoolIfBrokerDown(List.of(rec), e)) return 0;
+                if (!retryTracking()) throw e;
+                // the row steps aside until it is due; 0 lets the poller back off in case the broker is down
+                countFailure(e);
+                recordFailure(rec, e);
+                return 0;
             }
-            
-            log.info("Marked outbox id={} as {}", rec.getId(), props.getSentStatus());
+
+            markSent(List.of(rec.getId()));
+
+            log.debug("Marked outbox id={} as {}", rec.getId(), props.getSentStatus());
+            return 1;
         } catch (Exception e) {
             log.error("Outbox processing error", e);
+            countFailure(e);
             // keep as PENDING; we'll retry later
+            if (rec != null) releaseLeases(List.of(rec.getId()));
+            return 0;
+        }
+    }
+
+    /** Whether several workers may poll, i.e. partitions keep each ordering key on one worker. */
+    public boolean supportsPartitions() {
+        return store.locksClaimedRows();
+    }
+
+    /** Publish batches back to back for as long as they come back full. */
+    private int drainBatches(int partition, int partitions) {
+        int total = 0;
+        try {
+            int published;
+            int limit;
+            do {
+                // a half-open breaker probes with a single record; once it closes, batches are full size again
+                limit = breaker != null && breaker.isProbing() ? 1 : props.getBatchSize();
+                int batchLimit = limit;
+                published = transactionTemplate != null
+                        ? transactionTemplate.execute(status -> processBatch(partition, partitions, batchLimit))
+                        : processBatch(partition, partitions, batchLimit);
+                total += published;
+            } while (published == limit && (breaker == null || breaker.getState() == OutboxCircuitBreaker.State.CLOSED));
+        } catch (Exception e) {
+            log.error("Outbox batch processing error", e);
+            countFailure(e);
+            // the batch stays PENDING (or is rolled back) and is retried next poll
+        }
+        return total;
+    }
+
+    /**
+     * Claim, publish in one JMS transaction, then mark all as sent. A failure
+     * after the JMS commit leaves the rows PENDING and they are sent again,
+     * so delivery is at-least-once.
+     */
+    private int processBatch(int partition, int partitions, int limit) {
+        long start = System.nanoTime();
+        List<OutboxRecord> batch = store.claimPending(props.getPendingStatus(), limit, partition, partitions);
+        recordClaim(partition, batch.size(), start);
+        if (batch.isEmpty()) return 0;
+
+        try {
+            publishBatch(batch);
+        } catch (Exception e) {
+            if (spoolIfBrokerDown(batch, e)) return 0;
+            if (retryTracking() && (breaker == null || breaker.getState() == OutboxCircuitBreaker.State.CLOSED
+                    || !OutboxCircuitBreaker.isBrokerFailure(e))) {
+                countFailure(e);
+                log.warn("Outbox batch of {} failed, publishing one by one: {}", batch.size(), e.getMessage());
+                return publishIndividually(batch);
+            }
+            releaseLeases(batch.stream().map(OutboxRecord::getId).toList());
+            throw new IllegalStateException("Failed to publish outbox batch of " + batch.size(), e);
+        }
+
+        markSent(batch.stream().map(OutboxRecord::getId).toList());
+        log.debug("Published outbox batch of {} and marked {}", batch.size(), props.getSentStatus());
+        return batch.size();
+    }
+
+    /**
+     * Find the records that fail a batch: publish each on its own and record
+     * a failure on those that are rejected, so one bad record no longer
+     * blocks everything behind it. Later records of a failed record's key are
+     * left pending so they do not overtake it. A broker failure (see
+     * {@link OutboxCircuitBreaker#isBrokerFailure}) is not the record's fault:
+     * it and the rest of the batch are left alone and the short count makes
+     * the poller back off.
+     */
+    private int publishIndividually(List<OutboxRecord> batch) {
+        List<UUID> sent = new ArrayList<>();
+        List<UUID> untouched = new ArrayList<>();
+        Set<String> blockedKeys = new HashSet<>();
+        boolean brokerDown = false;
+        for (OutboxRecord rec : batch) {
+            if (brokerDown || (rec.getOrderingKey() != null && blockedKeys.contains(rec.getOrderingKey()))) {
+                untouched.add(rec.getId());
+                continue;
+            }
+            try {
+                publish(rec);
+                sent.add(rec.getId());
+            } catch (Exception e) {
+                countFailure(e);
+                if (OutboxCircuitBreaker.isBrokerFailure(e)) {
+                    brokerDown = true;
+                    untouched.add(rec.getId());
+                    continue;
+                }
+                recordFailure(rec, e);
+                if (rec.getOrderingKey() != null) blockedKeys.add(rec.getOrderingKey());
+            }
+        }
+        markSent(sent);
+        releaseLeases(untouched);
+        log.info("Published {} of {} outbox records one by one", sent.size(), batch.size());
+        return sent.size();
+    }
+
+    /**
+     * While the breaker is open, move the batch in hand to the spool and mark
+     * it spooled, so it is not claimed and failed again on every probe.
+     *
+     * @return false if there is no spool, the breaker is closed, the failure
+     *         is the records' own or the spool is full
+     */
+    private boolean spoolIfBrokerDown(List<OutboxRecord> batch, Exception failure) {
+        if (spool == null || breaker.getState() != OutboxCircuitBreaker.State.OPEN
+                || !OutboxCircuitBreaker.isBrokerFailure(failure)) {
+            return false;
+        }
+        try {
+            if (!spool.offer(batch)) {
+                log.warn("Outbox spool is full ({} bytes), leaving {} records in the outbox", spool.getBytes(),
+                        batch.size());
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("Could not spool {} outbox records, leaving them in the outbox: {}", batch.size(), e.toString());
+            return false;
+        }
+        countFailure(failure);
+        setStatus(batch.stream().map(OutboxRecord::getId).toList(), props.getSpooledStatus());
+        log.info("Spooled {} outbox records while the broker is unavailable ({} spooled)", batch.size(),
+                spool.getRecords());
+        return true;
+    }
+
+    /**
+     * Replay spooled batches, oldest first, and mark them sent. Stops at the
+     * first broker failure. A batch refused for any other reason is handed
+     * back to the outbox as pending, where retry tracking deals with it.
+     */
+    private int drainSpool() {
+        ReentrantLock lock = spool.getDrainLock();
+        // another worker is replaying; claiming now would overtake the spooled records
+        if (!lock.tryLock()) return 0;
+        int published = 0;
+        try {
+            for (Path file : spool.batches()) {
+                List<OutboxRecord> batch;
+                try {
+                    batch = spool.read(file);
+                } catch (IOException e) {
+                    log.error("Unreadable outbox spool file {}, set it aside; its records stay {}", file,
+                            props.getSpooledStatus(), e);
+                    spool.quarantine(file);
+                    continue;
+                }
+                List<UUID> ids = batch.stream().map(OutboxRecord::getId).toList();
+                try {
+                    publishBatch(batch);
+                } catch (Exception e) {
+                    countFailure(e);
+                    if (OutboxCircuitBreaker.isBrokerFailure(e)) return published;
+                    log.warn("Broker refused {} spooled outbox records, returning them to {}: {}", batch.size(),
+                            props.getPendingStatus(), e.getMessage());
+                    setStatus(ids, props.getPendingStatus());
+                    spool.remove(file, batch.size());
+                    continue;
+                }
+                markSent(ids);
+                spool.remove(file, batch.size());
+                published += batch.size();
+            }
+            if (published > 0) log.info("Replayed {} spooled outbox records", published);
+        } catch (IOException e) {
+            log.error("Outbox spool replay failed", e);
+            countFailure(e);
+        } finally {
+            lock.unlock();
+        }
+        return published;
+    }
+
+    /** Milliseconds until the open breaker lets a probe through; 0 when claims are allowed. */
+    public long millisUntilProbe() {
+        return breaker == null ? 0 : breaker.millisUntilProbe();
+    }
+
+    @Nullable
+    public OutboxCircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Count a failed attempt on the record: due again after an exponential
+     * backoff, or parked in the failed status once maxAttempts is reached.
+     */
+    private void recordFailure(OutboxRecord rec, Exception e) {
+        int attempts = rec.getAttempts() + 1;
+        String error = abbreviate(NestedExceptionUtils.getMostSpecificCause(e).toString());
+        if (attempts >= props.getMaxAttempts()) {
+            log.error("Outbox id={} failed {} times, moving it to {}: {}", rec.getId(), attempts,
+                    props.getFailedStatus(), error);
+            saveFailure(rec.getId(), attempts, null, error, props.getFailedStatus());
+            return;
+        }
+        double backoff = props.getRetryBackoffMs() * Math.pow(2, attempts - 1);
+        Instant nextAttempt = Instant.now().plusMillis((long) Math.min(backoff, props.getRetryBackoffMaxMs()));
+        log.warn("Outbox id={} failed (attempt {} of {}), retrying at {}: {}", rec.getId(), attempts,
+                props.getMaxAttempts(), nextAttempt, error);
+        saveFailure(rec.getId(), attempts, nextAttempt, error, props.getPendingStatus());
+    }
+
+    private void saveFailure(UUID id, int attempts, Instant nextAttempt, String error, String status) {
+        store.recordFailure(id, attempts, nextAttempt, error, status);
+    }
+
+    private void setStatus(List<UUID> ids, String status) {
+        store.updateStatus(ids, status);
+    }
+
+    private void markSent(List<UUID> ids) {
+        if (ids.isEmpty()) return;
+        store.markSent(ids, props.getSentStatus());
+    }
+
+    private boolean retryTracking() {
+        return props.getMaxAttempts() > 0;
+    }
+
+    private static String abbreviate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private void publish(OutboxRecord rec) throws Exception {
+        long start = System.nanoTime();
+        try {
+            publisher.publish(rec);
+        } catch (Exception e) {
+            if (breaker != null && OutboxCircuitBreaker.isBrokerFailure(e)) breaker.recordFailure(e);
+            throw e;
+        }
+        if (breaker != null) breaker.recordSuccess();
+        if (metrics != null) metrics.recordPublish(false, System.nanoTime() - start);
+    }
+
+    private void publishBatch(List<OutboxRecord> batch) throws Exception {
+        long start = System.nanoTime();
+        try {
+            publisher.publishRecords(batch);
+        } catch (Exception e) {
+            if (breaker != null && OutboxCircuitBreaker.isBrokerFailure(e)) breaker.recordFailure(e);
+            throw e;
+        }
+        if (breaker != null) breaker.recordSuccess();
+        if (metrics != null) metrics.recordPublish(true, System.nanoTime() - start);
+    }
+
+    private void countFailure(Exception e) {
+        if (metrics != null) metrics.recordFailure(e);
+    }
+
+    private void recordClaim(int partition, int claimed, long startNanos) {
+        if (metrics != null) metrics.recordClaim(partition, claimed, System.nanoTime() - startNanos);
+    }
+
+    /** Mongo leases would otherwise hold failed records until they expire. */
+    private void releaseLeases(List<UUID> ids) {
+        if (ids.isEmpty()) return;
+        try {
+            store.releaseLeases(ids);
+        } catch (Exception e) {
+            log.warn("Could not release outbox leases, they will expire: {}", e.getMessage());
         }
     }
 }
@@ -1,8 +1,19 @@
 package com.example.main.core;
+import java.time.Instant;
 import java.util.UUID;
 public class OutboxRecord {
     private UUID id;  // Changed to Object to support both Long (JDBC) and ObjectId (MongoDB)
     private String payload;
+    /** failed publish attempts so far; only read when retries are tracked */
+    private int attempts;
+    /** value of the ordering-key column, if one is configured */
+    private String orderingKey;
+    /** optional metadata columns, published as JMS properties; null when not mapped */
+    private String eventType;
+    private String source;
+    private String aggregateId;
+    private Instant createdAt;
+    private String partitionKey;
     // you can add extra columns as needed
 
     public OutboxRecord() {}
@@ -16,4 +27,18 @@ public class OutboxRecord {
     public void setId(UUID id) { this.id = id; }
     public String getPayload() { return payload; }
     public void setPayload(String payload) { this.payload = payload; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public String getOrderingKey() { return orderingKey; }
+    public void setOrderingKey(String orderingKey) { this.orderingKey = orderingKey; }
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+    public String getAggregateId() { return aggregateId; }
+    public void setAggregateId(String aggregateId) { this.aggregateId = aggregateId; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public String getPartitionKey() { return partitionKey; }
+    public void setPartitionKey(String partitionKey) { this.partitionKey = partitionKey; }
 }
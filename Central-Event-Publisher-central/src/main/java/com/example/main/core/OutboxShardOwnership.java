@@ -0,0 +1,235 @@
+package com.example.main.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Splits the outbox into shardCount hash partitions and claims a fair share
+ * of them for this relay, so several instances each poll only their own
+ * partitions instead of all competing for the same rows.
+ * <p>
+ * Every rebalanceIntervalMs the relay renews its claims, counts the live
+ * relays and moves towards ceil(shards / relays) partitions: it claims free
+ * partitions when it has too few and gives up the extras when a relay has
+ * joined. A partition being given up stops being polled at once but is only
+ * released one interval later, so its in-flight batch finishes before
+ * another relay claims the same keys. Partitions of a relay that dies are
+ * free again as soon as its claims lapse, and the others pick them up on
+ * their next rebalance. Where a claim can be lost before its owner notices
+ * (see {@link #delaysTakeover()}), a partition just acquired is likewise
+ * only polled from the next rebalance on.
+ */
+public abstract class OutboxShardOwnership implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxShardOwnership.class);
+
+    private final int shardCount;
+    private final long rebalanceIntervalMs;
+    private final String relayId;
+    private final OutboxMetrics metrics;
+
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> releasing = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> acquiring = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> acquiredListeners = new CopyOnWriteArrayList<>();
+    // claims cannot be trusted past this point without a successful renewal
+    private volatile long validUntil;
+
+    private ScheduledExecutorService executor;
+    private volatile boolean running;
+
+    protected OutboxShardOwnership(int shardCount, long rebalanceIntervalMs, String relayId, OutboxMetrics metrics) {
+        if (shardCount < 1) throw new IllegalArgumentException("outbox.shards must be positive: " + shardCount);
+        this.shardCount = shardCount;
+        this.rebalanceIntervalMs = rebalanceIntervalMs;
+        this.relayId = relayId;
+        this.metrics = metrics;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /** Whether this relay may poll the partition right now. */
+    public boolean owns(int shard) {
+        return owned.contains(shard) && !releasing.contains(shard) && !acquiring.contains(shard)
+                && System.currentTimeMillis() < validUntil;
+    }
+
+    /** Partitions this relay may poll, ascending. */
+    public List<Integer> ownedShards() {
+        if (System.currentTimeMillis() >= validUntil) return List.of();
+        Set<Integer> shards = new TreeSet<>(owned);
+        shards.removeAll(releasing);
+        shards.removeAll(acquiring);
+        return new ArrayList<>(shards);
+    }
+
+    /** Run after a rebalance that claimed partitions, e.g. to poll them at once. */
+    public void onShardsAcquired(Runnable listener) {
+        acquiredListeners.add(listener);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        if (!isSupported()) {
+            log.warn("Outbox shard ownership is not supported by this database; relay {} polls all {} shards",
+                    relayId, shardCount);
+            for (int shard = 0; shard < shardCount; shard++) owned.add(shard);
+            validUntil = Long.MAX_VALUE;
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("outbox-shards-"));
+        executor.scheduleWithFixedDelay(this::rebalanceSafely, 0, rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        validUntil = 0;
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            releaseAll();
+        } catch (RuntimeException e) {
+            log.warn("Could not release outbox shards, they will lapse: {}", e.getMessage());
+        }
+        owned.clear();
+        releasing.clear();
+        acquiring.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void rebalanceSafely() {
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            // without a renewal we cannot tell whether another relay took over, so stop polling everything
+            if (!owned.isEmpty()) {
+                log.warn("Outbox shard rebalance failed, dropping {} shards: {}", owned.size(), e.getMessage());
+            }
+            owned.clear();
+            releasing.clear();
+            acquiring.clear();
+            validUntil = 0;
+        } finally {
+            if (metrics != null) metrics.recordOwnedShards(ownedShards().size());
+        }
+    }
+
+    private void rebalance() {
+        long start = System.currentTimeMillis();
+        if (!renew(owned)) {
+            log.warn("Relay {} lost its outbox shard claims {}", relayId, new TreeSet<>(owned));
+            owned.clear();
+            releasing.clear();
+            acquiring.clear();
+        }
+        validUntil = claimValidityMs() == Long.MAX_VALUE ? Long.MAX_VALUE : start + claimValidityMs();
+
+        // held through a whole interval, so any previous owner has renewed and found its claim gone
+        boolean takenOver = !acquiring.isEmpty();
+        acquiring.clear();
+        if (takenOver) acquiredListeners.forEach(Runnable::run);
+
+        for (int shard : releasing) {
+            release(shard);
+            owned.remove(shard);
+        }
+        releasing.clear();
+
+        int relays = Math.max(1, liveRelays());
+        int fairShare = (shardCount + relays - 1) / relays;
+        int excess = owned.size() - fairShare;
+        if (excess > 0) {
+            List<Integer> giveUp = new ArrayList<>(new TreeSet<>(owned).descendingSet()).subList(0, excess);
+            releasing.addAll(giveUp);
+            log.info("Relay {} giving up outbox shards {} ({} relays, {} each)", relayId, giveUp, relays, fairShare);
+            return;
+        }
+
+        List<Integer> acquired = new ArrayList<>();
+        // start at a relay-specific offset so relays joining together try different shards first
+        int offset = Math.floorMod(relayId.hashCode(), shardCount);
+        for (int i = 0; i < shardCount && owned.size() < fairShare; i++) {
+            int shard = (offset + i) % shardCount;
+            if (!owned.contains(shard) && tryAcquire(shard)) {
+                owned.add(shard);
+                acquired.add(shard);
+            }
+        }
+        if (!acquired.isEmpty()) {
+            log.info("Relay {} acquired outbox shards {}, now owns {} of {} ({} relays)", relayId, acquired,
+                    owned.size(), shardCount, relays);
+            if (delaysTakeover()) {
+                acquiring.addAll(acquired);
+            } else {
+                acquiredListeners.forEach(Runnable::run);
+            }
+        }
+    }
+
+    protected String getRelayId() {
+        return relayId;
+    }
+
+    /** False if the database cannot arbitrate ownership; the relay then polls every shard. */
+    protected boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Whether a partition just acquired waits one interval before it is
+     * polled, because its previous owner may have lost the claim without
+     * knowing and only finds out at its next renewal.
+     */
+    protected boolean delaysTakeover() {
+        return false;
+    }
+
+    /** How long a successful renewal keeps the claims valid; unbounded while a session holds them. */
+    protected long claimValidityMs() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Keep this relay registered and its claims alive.
+     *
+     * @return false if some of {@code claimed} were lost, e.g. with the connection holding them
+     */
+    protected abstract boolean renew(Set<Integer> claimed);
+
+    /** Number of relays currently registered, this one included. */
+    protected abstract int liveRelays();
+
+    protected abstract boolean tryAcquire(int shard);
+
+    protected abstract void release(int shard);
+
+    /** Release every claim and the registration on shutdown. */
+    protected abstract void releaseAll();
+}
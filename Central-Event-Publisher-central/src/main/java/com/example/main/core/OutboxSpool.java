@@ -0,0 +1,198 @@
+package com.example.main.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Local file-backed queue of claimed batches the broker did not take. Each
+ * batch is one file, written to a temporary name, forced to disk and then
+ * renamed, so a crash leaves either the whole batch or none of it. Files
+ * are replayed oldest first; the relay drains them before claiming again so
+ * spooled records keep their place ahead of newer ones.
+ */
+public class OutboxSpool {
+
+    private static final String SUFFIX = ".spool";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String BAD_SUFFIX = ".bad";
+    private static final int FORMAT = 1;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /** @param maxBytes {@link #offer(List)} refuses batches beyond this total */
+    public OutboxSpool(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    // a batch that was never completely written, so its records were never marked spooled
+                    Files.delete(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    sequence.accumulateAndGet(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())),
+                            Math::max);
+                    bytes.addAndGet(Files.size(file));
+                    records.addAndGet(count(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Spool a batch durably.
+     *
+     * @return false if the spool is full; the batch must then stay in the outbox
+     */
+    public boolean offer(List<OutboxRecord> batch) throws IOException {
+        if (bytes.get() >= maxBytes) return false;
+        Path file = directory.resolve(String.format("%020d%s", sequence.incrementAndGet(), SUFFIX));
+        Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            write(out, batch);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        bytes.addAndGet(Files.size(file));
+        records.addAndGet(batch.size());
+        return true;
+    }
+
+    /** Spooled batch files, oldest first. */
+    public List<Path> batches() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+
+    public List<OutboxRecord> read(Path batch) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(batch))) {
+            return read(new DataInputStream(in));
+        }
+    }
+
+    public void remove(Path batch, int recordCount) throws IOException {
+        long size = Files.size(batch);
+        Files.delete(batch);
+        bytes.addAndGet(-size);
+        records.addAndGet(-recordCount);
+    }
+
+    /** Rename an unreadable batch out of the replay; its records stay spooled in the outbox for an operator. */
+    public void quarantine(Path batch) throws IOException {
+        long size = Files.size(batch);
+        long count = count(batch);
+        Files.move(batch, batch.resolveSibling(batch.getFileName() + BAD_SUFFIX));
+        bytes.addAndGet(-size);
+        records.addAndGet(-count);
+    }
+
+    public boolean isEmpty() {
+        return records.get() == 0;
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /** Held while one worker replays the spool; the others skip their poll meanwhile. */
+    public ReentrantLock getDrainLock() {
+        return drainLock;
+    }
+
+    /** Records in a batch file by its header; 0 if the header cannot be read. */
+    private static long count(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            in.readInt();
+            return in.readInt();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void write(DataOutputStream out, List<OutboxRecord> batch) throws IOException {
+        out.writeInt(FORMAT);
+        out.writeInt(batch.size());
+        for (OutboxRecord rec : batch) {
+            out.writeLong(rec.getId().getMostSignificantBits());
+            out.writeLong(rec.getId().getLeastSignificantBits());
+            out.writeInt(rec.getAttempts());
+            writeString(out, rec.getPayload());
+            writeString(out, rec.getOrderingKey());
+            writeString(out, rec.getEventType());
+            writeString(out, rec.getSource());
+            writeString(out, rec.getAggregateId());
+            writeString(out, rec.getPartitionKey());
+            out.writeLong(rec.getCreatedAt() == null ? Long.MIN_VALUE : rec.getCreatedAt().toEpochMilli());
+        }
+    }
+
+    private static List<OutboxRecord> read(DataInputStream in) throws IOException {
+        int format = in.readInt();
+        if (format != FORMAT) throw new IOException("Unsupported outbox spool format " + format);
+        int count = in.readInt();
+        List<OutboxRecord> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OutboxRecord rec = new OutboxRecord(new UUID(in.readLong(), in.readLong()), null);
+            rec.setAttempts(in.readInt());
+            rec.setPayload(readString(in));
+            rec.setOrderingKey(readString(in));
+            rec.setEventType(readString(in));
+            rec.setSource(readString(in));
+            rec.setAggregateId(readString(in));
+            rec.setPartitionKey(readString(in));
+            long createdAt = in.readLong();
+            rec.setCreatedAt(createdAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(createdAt));
+            batch.add(rec);
+        }
+        return batch;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
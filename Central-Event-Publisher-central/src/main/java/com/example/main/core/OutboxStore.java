@@ -0,0 +1,58 @@
+package com.example.main.core;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The outbox as the relay polls, marks and purges it, whichever database
+ * holds it: {@link GenericOutboxRepository} for JDBC tables,
+ * {@link MongoOutboxRepository} for MongoDB collections.
+ */
+public interface OutboxStore {
+
+    /** Claim the oldest pending record of one partition, or null if there is none. */
+    OutboxRecord fetchNextPending(String pendingStatus, int partition, int partitions);
+
+    /** Claim up to {@code limit} pending records of one partition, oldest first. */
+    List<OutboxRecord> claimPending(String pendingStatus, int limit, int partition, int partitions);
+
+    long updateStatus(Collection<UUID> ids, String status);
+
+    long markSent(Collection<UUID> ids, String sentStatus);
+
+    /**
+     * Record a failed publish: store the attempt count and error, and either
+     * schedule the next attempt or move the record to another status.
+     */
+    void recordFailure(UUID id, int attempts, Instant nextAttemptAt, String lastError, String status);
+
+    /** Pending count and oldest pending creation time. */
+    OutboxBacklog pendingBacklog(String pendingStatus);
+
+    /**
+     * Delete up to {@code limit} records sent before {@code cutoff}, archiving
+     * them first when {@code archive} is not null.
+     *
+     * @return records removed from the outbox
+     */
+    long purgeSent(String sentStatus, Instant cutoff, int limit, String archive);
+
+    /**
+     * Give back claims on records that were not published, so they are retried
+     * on the next poll. Claims that end with their transaction need nothing.
+     */
+    default long releaseLeases(Collection<UUID> ids) {
+        return 0;
+    }
+
+    /**
+     * Whether a claim is a row lock that a surrounding transaction holds until
+     * the batch is marked, and partitions follow the ordering key so several
+     * workers may poll. Lease-based claims are neither.
+     */
+    default boolean locksClaimedRows() {
+        return false;
+    }
+}
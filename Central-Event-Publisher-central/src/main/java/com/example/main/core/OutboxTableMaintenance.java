@@ -0,0 +1,126 @@
+package com.example.main.core;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Keeps the outbox table small enough that claiming stays cheap. At startup
+ * it adds (or logs) the retry-tracking columns and creates (or logs) the
+ * partial index on pending records; when purging is enabled it then removes
+ * sent records past the retention window in bounded batches, or rotates
+ * daily partitions on PostgreSQL.
+ */
+public class OutboxTableMaintenance implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxTableMaintenance.class);
+
+    private final OutboxStore store;
+    private final OutboxProperties props;
+    private final OutboxMetrics metrics;
+
+    public OutboxTableMaintenance(OutboxStore store, OutboxProperties props, OutboxMetrics metrics) {
+        this.store = store;
+        this.props = props;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (props.isPurgeEnabled() && props.getPurgeMode() != OutboxProperties.PurgeMode.PARTITION
+                && store instanceof GenericOutboxRepository && props.getSentAtColumn() == null) {
+            throw new IllegalStateException("outbox.purge-enabled needs outbox.sent-at-column");
+        }
+        try {
+            prepareTable();
+        } catch (RuntimeException e) {
+            // the relay works without the index, only slower
+            log.warn("Could not prepare the outbox table: {}", e.getMessage());
+        }
+    }
+
+    private void prepareTable() {
+        if (store instanceof MongoOutboxRepository mongoRepository) {
+            if (props.isCreatePendingIndex()) mongoRepository.ensurePendingIndex(props.getPendingStatus());
+            return;
+        }
+        if (!(store instanceof GenericOutboxRepository jdbcRepository)) return;
+        if (props.isPurgeEnabled() && props.getPurgeMode() == OutboxProperties.PurgeMode.ARCHIVE
+                && jdbcRepository.isPostgres()) {
+            jdbcRepository.createArchiveTable(props.getArchiveTableName());
+        }
+        if (props.getMaxAttempts() > 0) {
+            List<String> retryColumns = jdbcRepository.retryColumnsDdl();
+            if (props.isCreateRetryColumns()) {
+                for (String statement : retryColumns) {
+                    log.info("Adding outbox retry column: {}", statement);
+                    jdbcRepository.execute(statement);
+                }
+            } else if (!retryColumns.isEmpty()) {
+                log.warn("outbox.max-attempts needs columns missing from {} "
+                        + "(outbox.create-retry-columns=true adds them): {}",
+                        props.getTableName(), String.join("; ", retryColumns));
+            }
+        }
+        String ddl = jdbcRepository.pendingIndexDdl(props.getPendingStatus());
+        if (ddl == null) return;
+        if (props.isCreatePendingIndex()) {
+            log.info("Ensuring outbox pending index: {}", ddl);
+            jdbcRepository.execute(ddl);
+        } else {
+            log.info("Recommended outbox index (outbox.create-pending-index=true creates it): {}", ddl);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:60000}",
+               initialDelayString = "${outbox.purge-interval-ms:60000}")
+    public void purge() {
+        if (!props.isPurgeEnabled()) return;
+        try {
+            if (props.getPurgeMode() == OutboxProperties.PurgeMode.PARTITION
+                    && store instanceof GenericOutboxRepository jdbcRepository) {
+                rotatePartitions(jdbcRepository);
+            } else {
+                purgeExpired();
+            }
+        } catch (RuntimeException e) {
+            log.error("Outbox purge failed", e);
+        }
+    }
+
+    /** One short statement per batch, repeated while batches come back full. */
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minusMillis(props.getPurgeRetentionMs());
+        String archive = props.getPurgeMode() == OutboxProperties.PurgeMode.ARCHIVE ? props.getArchiveTableName() : null;
+        int batchSize = props.getPurgeBatchSize();
+        long total = 0;
+        long removed;
+        do {
+            removed = store.purgeSent(props.getSentStatus(), cutoff, batchSize, archive);
+            metrics.recordPurged(removed);
+            total += removed;
+        } while (removed == batchSize && !Thread.currentThread().isInterrupted());
+        if (total > 0) {
+            log.info("Purged {} outbox records sent before {}{}", total, cutoff,
+                    archive != null ? " into " + archive : "");
+        }
+    }
+
+    private void rotatePartitions(GenericOutboxRepository jdbcRepository) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        jdbcRepository.ensureDailyPartitions(today, props.getPartitionPremakeDays() + 1);
+        LocalDate cutoff = Instant.now().minusMillis(props.getPurgeRetentionMs()).atZone(ZoneOffset.UTC).toLocalDate();
+        List<String> dropped = jdbcRepository.dropDailyPartitionsBefore(cutoff, props.getSentStatus());
+        if (!dropped.isEmpty()) {
+            log.info("Dropped outbox partitions {}", dropped);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.main.core;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Producer side of the outbox: appends events to the table or collection
+ * the relay reads, with the column names and status values configured under
+ * outbox.*. Call it inside the transaction that changes the business data so
+ * the events commit or roll back with it. On JDBC a batch is written as
+ * multi-row INSERTs of up to writerInsertRows rows, or as a single COPY on
+ * PostgreSQL from writerCopyThreshold rows on; MongoDB gets one insertMany.
+ */
+public class OutboxWriter {
+
+    private final GenericOutboxRepository jdbcRepo;
+    private final MongoOutboxRepository mongoRepo;
+    private final OutboxProperties props;
+    // a LISTENing relay without the trigger only hears about rows the application announces
+    private final boolean notifyPending;
+
+    public OutboxWriter(GenericOutboxRepository jdbcRepo, MongoOutboxRepository mongoRepo, OutboxProperties props) {
+        this.jdbcRepo = jdbcRepo;
+        this.mongoRepo = mongoRepo;
+        this.props = props;
+        this.notifyPending = props.isListenNotify() && !props.isNotifyInstallTrigger();
+    }
+
+    /** Append records as pending, for the relay to publish. */
+    public int append(List<OutboxRecord> records) {
+        return append(records, props.getPendingStatus());
+    }
+
+    /**
+     * Append records with another initial status, e.g. one the producer
+     * moves to pending itself later. Records without an id get a random one,
+     * and records without a creation time the current time.
+     *
+     * @return records written
+     */
+    public int append(List<OutboxRecord> records, String status) {
+        if (records.isEmpty()) return 0;
+        Instant now = Instant.now();
+        for (OutboxRecord rec : records) {
+            if (rec.getId() == null) rec.setId(UUID.randomUUID());
+            if (rec.getCreatedAt() == null) rec.setCreatedAt(now);
+        }
+        if (mongoRepo != null) return mongoRepo.insert(records, status);
+
+        int threshold = props.getWriterCopyThreshold();
+        int written = threshold > 0 && records.size() >= threshold && jdbcRepo.isPostgres()
+                ? (int) jdbcRepo.copy(records, status)
+                : jdbcRepo.insert(records, status, props.getWriterInsertRows());
+        // delivered on commit, once per transaction however many batches it appends
+        if (notifyPending && status.equals(props.getPendingStatus())) jdbcRepo.notifyPending();
+        return written;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.main.core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Push trigger for JDBC outboxes on PostgreSQL. Holds one connection that
+ * LISTENs on the outbox channel and wakes the {@link OutboxPoller} whenever
+ * notifications arrive; a burst of them is handled as one drain. If the
+ * database is not PostgreSQL, or the connection drops, the poller's backoff
+ * keeps the relay going until the listener reconnects.
+ */
+public class PostgresOutboxListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresOutboxListener.class);
+
+    private static final int WAIT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final DataSource dataSource;
+    private final GenericOutboxRepository repository;
+    private final OutboxPoller poller;
+    private final OutboxProperties props;
+    private final OutboxMetrics metrics;
+    private final long reconnectDelayMs;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    public PostgresOutboxListener(DataSource dataSource,
+                                  GenericOutboxRepository repository,
+                                  OutboxPoller poller,
+                                  OutboxProperties props,
+                                  OutboxMetrics metrics) {
+        this(dataSource, repository, poller, props, metrics, RECONNECT_DELAY_MS);
+    }
+
+    /** @param reconnectDelayMs wait after the LISTEN connection failed before opening another */
+    PostgresOutboxListener(DataSource dataSource,
+                           GenericOutboxRepository repository,
+                           OutboxPoller poller,
+                           OutboxProperties props,
+                           OutboxMetrics metrics,
+                           long reconnectDelayMs) {
+        this.dataSource = dataSource;
+        this.repository = repository;
+        this.poller = poller;
+        this.props = props;
+        this.metrics = metrics;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        if (!repository.isPostgres()) {
+            log.info("Outbox database is not PostgreSQL; LISTEN/NOTIFY disabled, relying on polling");
+            return;
+        }
+        if (props.isNotifyInstallTrigger()) {
+            repository.installNotifyTrigger(props.getPendingStatus());
+            log.info("Installed outbox notify trigger on {}", props.getTableName());
+        }
+        running = true;
+        thread = new CustomizableThreadFactory("outbox-listen-").newThread(this::listen);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        String channel = repository.getNotifyChannel();
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                log.info("Listening for outbox notifications on channel {}", channel);
+
+                // rows may have arrived while nobody was listening
+                poller.wakeUp();
+                try {
+                    while (running) {
+                        PGNotification[] notifications = pg.getNotifications(WAIT_MS);
+                        if (notifications != null && notifications.length > 0) {
+                            metrics.recordNotifications(notifications.length);
+                            poller.wakeUp();
+                        }
+                    }
+                } finally {
+                    // the connection goes back to the pool; stop it collecting notifications there
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("UNLISTEN *");
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                log.warn("Outbox LISTEN connection failed, retrying in {} ms: {}", reconnectDelayMs, e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
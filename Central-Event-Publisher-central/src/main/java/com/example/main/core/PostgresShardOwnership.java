@@ -0,0 +1,154 @@
+package com.example.main.core;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * Shard ownership through PostgreSQL session advisory locks, held on one
+ * dedicated connection: the lock (table key, shard) owns a shard, and every
+ * relay also holds (relays key, backend pid), so counting those locks in
+ * pg_locks gives the number of live relays. When a relay dies its session
+ * ends and all of its locks are released at once.
+ * <p>
+ * A relay whose connection breaks loses its locks at once but only notices
+ * when it checks the connection at its next rebalance, and may poll the
+ * shards until then. Another relay that takes such a shard over therefore
+ * waits one rebalance interval before polling it.
+ * <p>
+ * The connection is taken from the outbox DataSource for the relay's
+ * lifetime, so the pool needs one connection more.
+ */
+public class PostgresShardOwnership extends OutboxShardOwnership {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresShardOwnership.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource dataSource;
+    private final GenericOutboxRepository repository;
+    private final int shardKey;
+    private final int relaysKey;
+
+    private Connection connection;
+
+    public PostgresShardOwnership(DataSource dataSource, GenericOutboxRepository repository,
+                                  OutboxProperties props, OutboxMetrics metrics) {
+        super(props.getShards(), props.getShardRebalanceIntervalMs(), props.getRelayId(), metrics);
+        this.dataSource = dataSource;
+        this.repository = repository;
+        this.shardKey = lockKey(props.getTableName() + ":shards");
+        this.relaysKey = lockKey(props.getTableName() + ":relays");
+    }
+
+    @Override
+    protected boolean isSupported() {
+        return repository.isPostgres();
+    }
+
+    @Override
+    protected boolean delaysTakeover() {
+        return true;
+    }
+
+    @Override
+    protected boolean renew(Set<Integer> claimed) {
+        try {
+            if (connection != null && connection.isValid(VALIDATION_TIMEOUT_SECONDS)) return true;
+            boolean lost = connection != null && !claimed.isEmpty();
+            closeQuietly();
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT pg_try_advisory_lock(?, pg_backend_pid())")) {
+                statement.setInt(1, relaysKey);
+                statement.execute();
+            }
+            log.info("Relay {} registered for outbox shard ownership", getRelayId());
+            return !lost;
+        } catch (SQLException e) {
+            closeQuietly();
+            throw new IllegalStateException("Outbox shard connection failed", e);
+        }
+    }
+
+    @Override
+    protected int liveRelays() {
+        return queryInt("SELECT count(*) FROM pg_locks WHERE locktype = 'advisory' AND granted" +
+                        " AND database = (SELECT oid FROM pg_database WHERE datname = current_database())" +
+                        " AND classid = CAST(CAST(? AS bigint) AS oid) AND objsubid = 2",
+                relaysKey);
+    }
+
+    @Override
+    protected boolean tryAcquire(int shard) {
+        return queryBoolean("SELECT pg_try_advisory_lock(?, ?)", shardKey, shard);
+    }
+
+    @Override
+    protected void release(int shard) {
+        queryBoolean("SELECT pg_advisory_unlock(?, ?)", shardKey, shard);
+    }
+
+    @Override
+    protected void releaseAll() {
+        closeQuietly();
+    }
+
+    private int queryInt(String sql, int... args) {
+        try (PreparedStatement statement = prepare(sql, args); ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox shard query failed", e);
+        }
+    }
+
+    private boolean queryBoolean(String sql, int... args) {
+        try (PreparedStatement statement = prepare(sql, args); ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getBoolean(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox shard query failed", e);
+        }
+    }
+
+    private PreparedStatement prepare(String sql, int... args) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < args.length; i++) {
+            statement.setInt(i + 1, args[i]);
+        }
+        return statement;
+    }
+
+    private void closeQuietly() {
+        if (connection == null) return;
+        try (Connection closing = connection) {
+            // the connection goes back to the pool with its session; do not leave the locks held there
+            try (PreparedStatement statement = closing.prepareStatement("SELECT pg_advisory_unlock_all()")) {
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            log.debug("Closing outbox shard connection failed", e);
+        }
+        connection = null;
+    }
+
+    /** Positive, so it compares directly with the oid columns of pg_locks. */
+    private static int lockKey(String name) {
+        CRC32 crc = new CRC32();
+        crc.update(name.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() & 0x7fffffff);
+    }
+}
@@ -1,24 +1,51 @@
 package com.example.main.listener;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import com.example.main.core.OutboxEnvelope;
+import com.example.main.core.OutboxRecord;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+
 import java.util.List;
 
 @Component
 public class GenericJmsListener {
 
-    private final List<Object> receivedMessages = new ArrayList<>();
+    private static final Logger log = LoggerFactory.getLogger(GenericJmsListener.class);
 
+    private final OutboxMessageTap tap;
+
+    public GenericJmsListener(OutboxMessageTap tap) {
+        this.tap = tap;
+    }
+
+    /**
+     * Envelopes are unpacked here, so every outbox event is received on its
+     * own whether or not the publisher batched it.
+     */
     @JmsListener(destination = "${outbox.queue-name}")   // <-- placeholder
-    public void listen(Object message) {
-        receivedMessages.add(message);
-        System.out.println("Received message: " + message);
+    public void listen(Message message) throws JMSException {
+        List<OutboxRecord> events = OutboxEnvelope.unpack(message);
+        tap.record(events);
+        if (log.isDebugEnabled()) {
+            for (OutboxRecord event : events) {
+                log.debug("Received message: {} {}", event.getId(), event.getPayload());
+            }
+        }
     }
 
+    /** Payloads of the recent sampled events, newest first. */
     public List<Object> getReceivedMessages() {
-        return receivedMessages;
+        return tap.recent().stream().<Object>map(OutboxMessageTap.TappedEvent::payload).toList();
+    }
+
+    public OutboxMessageTap getTap() {
+        return tap;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.example.main.listener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.example.main.core.OutboxRecord;
+
+/**
+ * Bounded view of what the listener receives: the last {@code capacity}
+ * sampled events in a lock-free ring, running totals, and per-second
+ * counters over the last minute for rates. Memory stays the same however
+ * many messages arrive; payloads are kept only up to
+ * {@code maxPayloadChars}.
+ */
+public class OutboxMessageTap {
+
+    /** One sampled event; {@code outboxId} is null for plain messages without one. */
+    public record TappedEvent(long sequence, Instant receivedAt, UUID outboxId, int size, String payload,
+                              boolean truncated) {
+    }
+
+    static final int WINDOW_SECONDS = 60;
+
+    private final AtomicReferenceArray<TappedEvent> ring;
+    private final int mask;
+    private final int sampleEvery;
+    private final int maxPayloadChars;
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong chars = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+
+    // bucket i counts the second whose epoch second is stamped in it; updates may race, so rates are approximate
+    private final AtomicLongArray bucketSecond = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray bucketEvents = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray bucketChars = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * @param capacity        events kept, rounded up to a power of two; 0 keeps none
+     * @param sampleEvery     keep every n-th event
+     * @param maxPayloadChars longer payloads are cut to this length
+     */
+    public OutboxMessageTap(int capacity, int sampleEvery, int maxPayloadChars) {
+        int size = capacity <= 1 ? Math.max(0, capacity) : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxPayloadChars = Math.max(0, maxPayloadChars);
+    }
+
+    /** Count one received JMS message and the events it carried. */
+    public void record(List<OutboxRecord> received) {
+        messages.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long second = now / 1000;
+        int total = 0;
+        for (OutboxRecord event : received) {
+            String payload = event.getPayload() == null ? "" : event.getPayload();
+            total += payload.length();
+            if (events.incrementAndGet() % sampleEvery == 0 && ring.length() > 0) {
+                long seq = sampled.getAndIncrement();
+                boolean truncated = payload.length() > maxPayloadChars;
+                ring.set((int) (seq & mask), new TappedEvent(seq, Instant.ofEpochMilli(now), event.getId(),
+                        payload.length(), truncated ? payload.substring(0, maxPayloadChars) : payload, truncated));
+            }
+        }
+        chars.addAndGet(total);
+        addToBucket(second, received.size(), total);
+    }
+
+    private void addToBucket(long second, int eventCount, long size) {
+        int i = (int) (second % WINDOW_SECONDS);
+        long stamp = bucketSecond.get(i);
+        if (stamp != second && bucketSecond.compareAndSet(i, stamp, second)) {
+            bucketEvents.set(i, 0);
+            bucketChars.set(i, 0);
+        }
+        bucketEvents.addAndGet(i, eventCount);
+        bucketChars.addAndGet(i, size);
+    }
+
+    /** Sampled events still in the ring, newest first. */
+    public List<TappedEvent> recent() {
+        List<TappedEvent> recent = new ArrayList<>(ring.length());
+        long last = sampled.get() - 1;
+        for (long seq = last; seq >= 0 && seq > last - ring.length(); seq--) {
+            TappedEvent event = ring.get((int) (seq & mask));
+            // a slot can already hold a newer event, or not yet the one claimed for seq
+            if (event != null && event.sequence() == seq) recent.add(event);
+        }
+        return recent;
+    }
+
+    public long getMessages() { return messages.get(); }
+    public long getEvents() { return events.get(); }
+    /** payload characters received so far */
+    public long getChars() { return chars.get(); }
+    public int getCapacity() { return ring.length(); }
+    public int getSampleEvery() { return sampleEvery; }
+
+    /** Events per second over the last full {@value #WINDOW_SECONDS} seconds. */
+    public double eventsPerSecond() {
+        return windowSum(bucketEvents) / (double) WINDOW_SECONDS;
+    }
+
+    /** Payload characters per second over the last full {@value #WINDOW_SECONDS} seconds. */
+    public double charsPerSecond() {
+        return windowSum(bucketChars) / (double) WINDOW_SECONDS;
+    }
+
+    private long windowSum(AtomicLongArray buckets) {
+        long current = System.currentTimeMillis() / 1000;
+        long sum = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            long stamp = bucketSecond.get(i);
+            if (stamp < current && stamp >= current - WINDOW_SECONDS) sum += buckets.get(i);
+        }
+        return sum;
+    }
+}
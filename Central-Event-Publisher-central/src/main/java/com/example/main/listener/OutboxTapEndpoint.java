@@ -0,0 +1,35 @@
+package com.example.main.listener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * {@code /actuator/outboxtap}: totals, rates over the last minute and the
+ * recent sampled events of the {@link OutboxMessageTap}.
+ */
+@Endpoint(id = "outboxtap")
+public class OutboxTapEndpoint {
+
+    private final OutboxMessageTap tap;
+
+    public OutboxTapEndpoint(OutboxMessageTap tap) {
+        this.tap = tap;
+    }
+
+    @ReadOperation
+    public Map<String, Object> tap() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("messages", tap.getMessages());
+        body.put("events", tap.getEvents());
+        body.put("payloadChars", tap.getChars());
+        body.put("eventsPerSecond", tap.eventsPerSecond());
+        body.put("payloadCharsPerSecond", tap.charsPerSecond());
+        body.put("capacity", tap.getCapacity());
+        body.put("sampleEvery", tap.getSampleEvery());
+        body.put("recent", tap.recent());
+        return body;
+    }
+}
@@ -2,22 +2,95 @@ package com.example.main.publisher;
 
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.activemq.ActiveMQMessageProducer;
+import org.apache.activemq.AsyncCallback;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.connection.SessionProxy;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
 import org.springframework.stereotype.Component;
 
+import com.example.main.config.OutboxProperties;
+import com.example.main.core.OutboxEnvelope;
+import com.example.main.core.OutboxMessageHeaders;
 import com.example.main.core.OutboxMessagePublisher;
+import com.example.main.core.OutboxRecord;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
 
 @Component
 public class ActiveMqOutboxPublisher implements OutboxMessagePublisher {
 
     private final JmsTemplate jmsTemplate;
+    private final JmsTemplate batchTemplate;
     private final String queueName;
+    private final boolean asyncSend;
+    private final long sendTimeoutMs;
+    // shared by all relay workers, so the broker never sees more than this many unconfirmed sends
+    private final Semaphore inFlight;
+    private boolean messageGroups = true;
+    private boolean envelopeEnabled;
+    private int envelopeMaxEvents;
+    private int envelopeMaxBytes;
+    private boolean envelopeCompression;
 
     public ActiveMqOutboxPublisher(JmsTemplate jmsTemplate,
                                    @Value("${outbox.queue-name}") String queueName) {
+        this(jmsTemplate, queueName, false, 1, 0);
+    }
+
+    @Autowired
+    public ActiveMqOutboxPublisher(JmsTemplate jmsTemplate, OutboxProperties props) {
+        this(jmsTemplate, props.getQueueName(), props.isAsyncSend(), props.getMaxInFlightSends(),
+                props.getSendTimeoutMs());
+        this.messageGroups = props.isMessageGroups();
+        if (props.isEnvelopeEnabled()) {
+            useEnvelopes(props.getEnvelopeMaxEvents(), props.getEnvelopeMaxBytes(), props.isEnvelopeCompression());
+        }
+    }
+
+    /**
+     * @param asyncSend        publish batches with ActiveMQ async sends: up to
+     *                         {@code maxInFlightSends} messages wait for broker
+     *                         confirmation at once, and a batch returns only
+     *                         after every one of them is confirmed
+     * @param sendTimeoutMs    how long a batch waits for a window slot or for
+     *                         its last confirmation
+     */
+    public ActiveMqOutboxPublisher(JmsTemplate jmsTemplate, String queueName,
+                                   boolean asyncSend, int maxInFlightSends, long sendTimeoutMs) {
         this.jmsTemplate = jmsTemplate;
         this.queueName = queueName;
+        this.asyncSend = asyncSend;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlightSends));
+        this.batchTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+        this.batchTemplate.setSessionTransacted(true);
+    }
+
+    /**
+     * Send record batches as {@link OutboxEnvelope}s of up to {@code maxEvents}
+     * events or about {@code maxBytes} of payload each. Single publishes stay
+     * plain text messages.
+     */
+    public void useEnvelopes(int maxEvents, int maxBytes, boolean compress) {
+        this.envelopeEnabled = true;
+        this.envelopeMaxEvents = Math.max(1, maxEvents);
+        this.envelopeMaxBytes = Math.max(1, maxBytes);
+        this.envelopeCompression = compress;
     }
 
     @Override
@@ -25,4 +98,131 @@ public class ActiveMqOutboxPublisher implements OutboxMessagePublisher {
         // synchronous send; exception thrown on failure
         jmsTemplate.convertAndSend(queueName, payload);
     }
+
+    @Override
+    public void publish(OutboxRecord record) {
+        jmsTemplate.send(queueName, session -> textMessage(session, record));
+    }
+
+    @Override
+    public void publishBatch(List<String> payloads) {
+        send(payloads.stream().<MessageCreator>map(payload -> session -> session.createTextMessage(payload)).toList());
+    }
+
+    @Override
+    public void publishRecords(List<OutboxRecord> records) {
+        if (!envelopeEnabled) {
+            send(records.stream().<MessageCreator>map(rec -> session -> textMessage(session, rec)).toList());
+            return;
+        }
+        send(OutboxEnvelope.partition(records, envelopeMaxEvents, envelopeMaxBytes, messageGroups).stream()
+                .<MessageCreator>map(events -> session -> {
+                    Message message = OutboxEnvelope.createMessage(session, events, envelopeCompression);
+                    OutboxMessageHeaders.apply(message, events, messageGroups);
+                    return message;
+                })
+                .toList());
+    }
+
+    private Message textMessage(Session session, OutboxRecord record) throws JMSException {
+        Message message = session.createTextMessage(record.getPayload());
+        OutboxMessageHeaders.apply(message, record, messageGroups);
+        return message;
+    }
+
+    private void send(List<MessageCreator> messages) {
+        if (asyncSend) {
+            publishAsync(messages);
+            return;
+        }
+        // one transacted session and producer for the whole batch; the broker
+        // sees the messages only on commit, and none of them if anything fails
+        batchTemplate.execute(session -> {
+            MessageProducer producer = session.createProducer(session.createQueue(queueName));
+            try {
+                for (MessageCreator message : messages) {
+                    producer.send(message.createMessage(session));
+                }
+                session.commit();
+            } catch (JMSException | RuntimeException e) {
+                session.rollback();
+                throw e;
+            } finally {
+                producer.close();
+            }
+            return null;
+        }, true);
+    }
+
+    /**
+     * Send every message without waiting for its receipt, then wait for all
+     * receipts. Unlike the transacted batch, messages confirmed before a
+     * failure stay on the queue and are sent again with the rest of the batch.
+     * Each window slot the batch takes goes back exactly once: from its
+     * callback, or when the batch gives up on a callback that has not come
+     * (timeout, failure, dropped connection); a callback arriving after that
+     * finds its slot already returned.
+     */
+    private void publishAsync(List<MessageCreator> messages) {
+        CountDownLatch confirmed = new CountDownLatch(messages.size());
+        AtomicReference<JMSException> failure = new AtomicReference<>();
+        List<AtomicBoolean> slots = new ArrayList<>(messages.size());
+
+        jmsTemplate.execute(session -> {
+            // the callback send is ActiveMQ API, so go past Spring's cached session proxy
+            Session target = session instanceof SessionProxy proxy ? proxy.getTargetSession() : session;
+            ActiveMQMessageProducer producer =
+                    (ActiveMQMessageProducer) target.createProducer(target.createQueue(queueName));
+            int sent = 0;
+            try {
+                for (MessageCreator message : messages) {
+                    if (failure.get() != null) break;
+                    if (!inFlight.tryAcquire(sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        throw notConfirmed("No outbox send confirmed");
+                    }
+                    AtomicBoolean slot = new AtomicBoolean(true);
+                    slots.add(slot);
+                    producer.send(message.createMessage(target), new AsyncCallback() {
+                        @Override
+                        public void onSuccess() {
+                            release(slot);
+                            confirmed.countDown();
+                        }
+
+                        @Override
+                        public void onException(JMSException e) {
+                            failure.compareAndSet(null, e);
+                            release(slot);
+                            confirmed.countDown();
+                        }
+                    });
+                    sent++;
+                }
+                if (failure.get() == null && !confirmed.await(sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw notConfirmed("Outbox batch of " + messages.size() + " not confirmed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for outbox send confirmations", e);
+            } finally {
+                // slots of sends never handed over or still unconfirmed; confirmed ones were returned already
+                slots.forEach(this::release);
+                // messages left unsent after a failure will never be confirmed
+                for (int i = sent; i < messages.size(); i++) confirmed.countDown();
+                producer.close();
+            }
+            if (failure.get() != null) throw failure.get();
+            return null;
+        }, true);
+    }
+
+    private void release(AtomicBoolean slot) {
+        if (slot.compareAndSet(true, false)) inFlight.release();
+    }
+
+    /** The TimeoutException cause makes the circuit breaker count it as a broker failure. */
+    private IllegalStateException notConfirmed(String what) {
+        String message = what + " within " + sendTimeoutMs + " ms";
+        return new IllegalStateException(message, new TimeoutException(message));
+    }
 }
@@ -0,0 +1,270 @@
+package com.example.main.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.main.config.OutboxProperties;
+
+/**
+ * SQL and COPY data that {@link GenericOutboxRepository} generates, against a
+ * mocked JDBC connection that reports a database product and the table's
+ * columns, and records statements and COPY input.
+ */
+class GenericOutboxRepositoryTest {
+
+    // GenericOutboxRepository.MAX_BIND_PARAMETERS, the PostgreSQL protocol limit
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final Connection connection = mock(Connection.class);
+    private final List<String> preparedSql = new ArrayList<>();
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+    private final AtomicInteger copyWrites = new AtomicInteger();
+    private final CopyIn copyIn = mock(CopyIn.class);
+
+    @Test
+    void retryColumnsDdlAddsOnlyMissingColumns() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL", "id", "payload", "status", "ATTEMPTS");
+
+        assertThat(repository.retryColumnsDdl()).containsExactly(
+                "ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS next_attempt_at timestamp(6) with time zone",
+                "ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS last_error text");
+    }
+
+    @Test
+    void retryColumnsDdlIsEmptyWhenAllColumnsExist() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL",
+                "id", "payload", "status", "attempts", "next_attempt_at", "last_error");
+
+        assertThat(repository.retryColumnsDdl()).isEmpty();
+    }
+
+    @Test
+    void retryColumnsDdlOnMySql() throws SQLException {
+        GenericOutboxRepository repository = repository("MySQL", "id", "payload", "status");
+
+        assertThat(repository.retryColumnsDdl()).containsExactly(
+                "ALTER TABLE outbox_events ADD COLUMN attempts integer NOT NULL DEFAULT 0",
+                "ALTER TABLE outbox_events ADD COLUMN next_attempt_at timestamp(6) NULL",
+                "ALTER TABLE outbox_events ADD COLUMN last_error text");
+    }
+
+    @Test
+    void insertSplitsIntoStatementsOfRowsPerStatement() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL");
+
+        int inserted = repository.insert(records(1250), "NEW", 500);
+
+        assertThat(inserted).isEqualTo(1250);
+        assertThat(preparedSql).extracting(GenericOutboxRepositoryTest::rowsIn).containsExactly(500, 500, 250);
+        assertThat(preparedSql.get(0))
+                .startsWith("INSERT INTO outbox_events (id, payload, status) VALUES (?, ?, ?), ");
+    }
+
+    @Test
+    void insertCapsRowsAtTheBindParameterLimit() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL");
+        int maxRows = MAX_BIND_PARAMETERS / 3;
+
+        repository.insert(records(2 * maxRows + 1), "NEW", 100_000);
+
+        assertThat(preparedSql).extracting(GenericOutboxRepositoryTest::rowsIn).containsExactly(maxRows, maxRows, 1);
+    }
+
+    @Test
+    void insertBindsTimestampsAndUntypedStringsOnPostgres() throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeUpdate()).thenReturn(1);
+        GenericOutboxRepository repository = repository(props(), "PostgreSQL", statement);
+        OutboxRecord rec = new OutboxRecord(UUID.randomUUID(), "{}");
+        Instant createdAt = Instant.parse("2024-01-15T10:00:00.123456Z");
+        rec.setCreatedAt(createdAt);
+
+        repository.insert(List.of(rec), "NEW", 500);
+
+        assertThat(preparedSql).containsExactly(
+                "INSERT INTO outbox_events (id, payload, status, event_type, created_at) VALUES (?, ?, ?, ?, ?)");
+        verify(statement).setObject(1, rec.getId());
+        verify(statement).setObject(2, "{}", Types.OTHER);
+        verify(statement).setObject(3, "NEW", Types.OTHER);
+        verify(statement).setObject(4, null);
+        verify(statement).setTimestamp(5, Timestamp.from(createdAt));
+    }
+
+    @Test
+    void copyEscapesSeparatorsAndWritesNullAsBackslashN() throws SQLException {
+        GenericOutboxRepository repository = repository(props(), "PostgreSQL", null);
+        OutboxRecord rec = new OutboxRecord(UUID.fromString("00000000-0000-0000-0000-000000000001"),
+                "back\\slash\ttab\nnewline\rreturn");
+
+        long rows = repository.copy(List.of(rec), "NEW");
+
+        assertThat(rows).isEqualTo(1);
+        verify(connection.unwrap(PGConnection.class).getCopyAPI())
+                .copyIn("COPY outbox_events (id, payload, status, event_type, created_at) FROM STDIN");
+        assertThat(copiedText()).isEqualTo("00000000-0000-0000-0000-000000000001\t"
+                + "back\\\\slash\\ttab\\nnewline\\rreturn\tNEW\t\\N\t\\N\n");
+    }
+
+    @Test
+    void copyWritesTimestampsWithTheirOffset() throws SQLException {
+        TimeZone defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        try {
+            GenericOutboxRepository repository = repository(props(), "PostgreSQL", null);
+            OutboxRecord rec = new OutboxRecord(UUID.fromString("00000000-0000-0000-0000-000000000001"), "{}");
+            rec.setEventType("OrderReceivedEvent");
+            rec.setCreatedAt(Instant.parse("2024-01-15T10:00:00.123456Z"));
+
+            repository.copy(List.of(rec), "NEW");
+
+            // the same wall-clock time and offset the driver sends for Timestamp.from(createdAt)
+            assertThat(copiedText()).endsWith("\tOrderReceivedEvent\t2024-01-15T15:30:00.123456+05:30\n");
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test
+    void copyFlushesFullBuffersAndKeepsRowsIntact() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL");
+        List<OutboxRecord> records = records(5);
+        records.forEach(rec -> rec.setPayload("x".repeat(33_000) + "\t" + rec.getId()));
+
+        repository.copy(records, "NEW");
+
+        // 64K chars per write: two rows fill a buffer, the last one goes out at the end
+        assertThat(copyWrites).hasValue(3);
+        String[] lines = copiedText().split("\n");
+        assertThat(lines).hasSize(5);
+        for (int i = 0; i < lines.length; i++) {
+            UUID id = records.get(i).getId();
+            assertThat(lines[i]).isEqualTo(id + "\t" + "x".repeat(33_000) + "\\t" + id + "\tNEW");
+        }
+    }
+
+    @Test
+    void copyIsCancelledWhenWritingFails() throws SQLException {
+        GenericOutboxRepository repository = repository("PostgreSQL");
+        doThrow(new SQLException("Database connection failed when writing to copy"))
+                .when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(copyIn.isActive()).thenReturn(true);
+
+        assertThatThrownBy(() -> repository.copy(records(3), "NEW"))
+                .hasMessageContaining("writing to copy");
+        verify(copyIn).cancelCopy();
+    }
+
+    private GenericOutboxRepository repository(String product, String... columns) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class, withSettings().stubOnly());
+        when(statement.executeUpdate()).thenAnswer(invocation -> rowsIn(preparedSql.get(preparedSql.size() - 1)));
+        mockConnection(product, List.of(columns), statement);
+        return new GenericOutboxRepository(new JdbcTemplate(dataSource()), "outbox_events");
+    }
+
+    private GenericOutboxRepository repository(OutboxProperties props, String product, PreparedStatement statement)
+            throws SQLException {
+        mockConnection(product, List.of(), statement);
+        return new GenericOutboxRepository(new JdbcTemplate(dataSource()), props);
+    }
+
+    private static OutboxProperties props() {
+        OutboxProperties props = new OutboxProperties();
+        props.setTableName("outbox_events");
+        props.setEventTypeColumn("event_type");
+        props.setCreatedAtColumn("created_at");
+        return props;
+    }
+
+    private void mockConnection(String product, List<String> columns, PreparedStatement statement)
+            throws SQLException {
+        DatabaseMetaData databaseMeta = mock(DatabaseMetaData.class);
+        when(databaseMeta.getDatabaseProductName()).thenReturn(product);
+        when(connection.getMetaData()).thenReturn(databaseMeta);
+
+        ResultSetMetaData resultMeta = mock(ResultSetMetaData.class);
+        when(resultMeta.getColumnCount()).thenReturn(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            when(resultMeta.getColumnName(i + 1)).thenReturn(columns.get(i));
+        }
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(resultMeta);
+        Statement query = mock(Statement.class);
+        when(query.executeQuery(anyString())).thenReturn(resultSet);
+        when(connection.createStatement()).thenReturn(query);
+
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            preparedSql.add(invocation.getArgument(0));
+            return statement;
+        });
+
+        doAnswer(invocation -> {
+            byte[] bytes = invocation.getArgument(0);
+            copied.write(bytes, invocation.<Integer>getArgument(1), invocation.<Integer>getArgument(2));
+            copyWrites.incrementAndGet();
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        when(copyIn.endCopy()).thenAnswer(invocation -> (long) copiedText().split("\n", -1).length - 1);
+        CopyManager copyManager = mock(CopyManager.class);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        PGConnection pg = mock(PGConnection.class);
+        when(pg.getCopyAPI()).thenReturn(copyManager);
+        when(connection.unwrap(eq(PGConnection.class))).thenReturn(pg);
+    }
+
+    private DataSource dataSource() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private String copiedText() {
+        return copied.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<OutboxRecord> records(int count) {
+        List<OutboxRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) records.add(new OutboxRecord(UUID.randomUUID(), "{\"n\":" + i + "}"));
+        return records;
+    }
+
+    private static int rowsIn(String insertSql) {
+        String values = insertSql.substring(insertSql.indexOf(" VALUES ") + " VALUES ".length());
+        return values.split("\\), \\(").length;
+    }
+}
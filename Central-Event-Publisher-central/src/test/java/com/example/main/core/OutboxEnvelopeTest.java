@@ -0,0 +1,96 @@
+package com.example.main.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Envelope encoding round trips, envelopes never mix message groups, and a
+ * corrupt body is rejected before it can make decode allocate what it claims.
+ */
+class OutboxEnvelopeTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        List<OutboxRecord> events = List.of(record("firm-1", "{\"n\":1}"), record("firm-2", "café"));
+
+        for (boolean compress : new boolean[] {false, true}) {
+            List<OutboxRecord> decoded = OutboxEnvelope.decode(OutboxEnvelope.encode(events, compress), compress);
+
+            assertThat(decoded).extracting(OutboxRecord::getId).containsExactly(events.get(0).getId(),
+                    events.get(1).getId());
+            assertThat(decoded).extracting(OutboxRecord::getPayload).containsExactly("{\"n\":1}", "café");
+        }
+    }
+
+    @Test
+    void envelopesHoldOneGroupEachInOrder() {
+        OutboxRecord a1 = record("A", "a1");
+        OutboxRecord b1 = record("B", "b1");
+        OutboxRecord a2 = record("A", "a2");
+        OutboxRecord none = record(null, "x");
+        OutboxRecord a3 = record("A", "a3");
+
+        List<List<OutboxRecord>> envelopes =
+                OutboxEnvelope.partition(List.of(a1, b1, a2, none, a3), 2, 1 << 20, true);
+
+        assertThat(envelopes).containsExactly(List.of(a1, a2), List.of(a3), List.of(b1), List.of(none));
+        assertThat(OutboxEnvelope.partition(List.of(a1, b1, a2), 10, 1 << 20, false))
+                .containsExactly(List.of(a1, b1, a2));
+    }
+
+    @Test
+    void rejectsACountTheBodyCannotHold() {
+        byte[] body = ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array();
+
+        assertThatThrownBy(() -> OutboxEnvelope.decode(body, false))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasRootCauseMessage("Event count 2147483647 does not fit an envelope of 4 bytes");
+    }
+
+    @Test
+    void rejectsPayloadLengthsPastTheEndOfTheBody() {
+        byte[] body = OutboxEnvelope.encode(List.of(record("A", "short")), false);
+        // the index entry's length field comes after the count and the id
+        ByteBuffer.wrap(body).putInt(4 + 16, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> OutboxEnvelope.decode(body, false))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasRootCauseMessage("Payload of event 0 is cut short at 5 of 2147483647 bytes");
+    }
+
+    @Test
+    void rejectsANegativeCountInACompressedBody() {
+        byte[] plain = OutboxEnvelope.encode(List.of(record("A", "a")), false);
+        ByteBuffer.wrap(plain).putInt(0, -1);
+        byte[] compressed = deflate(plain);
+
+        assertThatThrownBy(() -> OutboxEnvelope.decode(compressed, true))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasRootCauseMessage("Event count -1 does not fit an envelope of " + compressed.length + " bytes");
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] out = new byte[bytes.length + 64];
+        int length = deflater.deflate(out);
+        deflater.end();
+        return Arrays.copyOf(out, length);
+    }
+
+    private static OutboxRecord record(String orderingKey, String payload) {
+        OutboxRecord rec = new OutboxRecord(UUID.randomUUID(), payload);
+        rec.setOrderingKey(orderingKey);
+        return rec;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.main.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.main.config.OutboxProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Several workers draining one outbox while records keep arriving, some
+ * publishes fail and get retried, and every append wakes the poller: each
+ * ordering key must still come out in created order, exactly once, and never
+ * from two threads at a time. The outbox is an in-memory table with the
+ * claim semantics of {@link GenericOutboxRepository#claimPending(String, int, int, int)}.
+ */
+class OutboxPollerOrderingStressTest {
+
+    private static final int WORKERS = 4;
+    private static final int KEYS = 50;
+    private static final int RECORDS = 10_000;
+
+    private final OutboxProperties props = new OutboxProperties();
+    private final InMemoryOutbox outbox = new InMemoryOutbox();
+    private final KeyOrderPublisher publisher = new KeyOrderPublisher();
+    private OutboxPoller poller;
+
+    @AfterEach
+    void tearDown() {
+        if (poller != null) poller.stop();
+    }
+
+    @Test
+    void recordsOfOneKeyArePublishedInOrderAcrossWorkers() throws InterruptedException {
+        props.setWorkers(WORKERS);
+        props.setBatchSize(20);
+        props.setMinPollingIntervalMs(1);
+        props.setMaxPollingIntervalMs(20);
+        props.setMaxAttempts(100);
+        props.setRetryBackoffMs(5);
+        props.setRetryBackoffMaxMs(20);
+        OutboxProcessor processor = new OutboxProcessor(outbox, publisher, props, null, null, null, null);
+        poller = new OutboxPoller(processor, props, new OutboxMetrics(new SimpleMeterRegistry(), props));
+        poller.start();
+
+        int[] nextSeq = new int[KEYS];
+        for (int i = 0; i < RECORDS; i++) {
+            int key = ThreadLocalRandom.current().nextInt(KEYS);
+            outbox.append("key-" + key, nextSeq[key]++);
+            poller.wakeUp();
+            if (i % 100 == 0) Thread.sleep(1);
+        }
+
+        await().atMost(Duration.ofSeconds(60)).until(() -> publisher.published() == RECORDS);
+        for (int key = 0; key < KEYS; key++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int seq = 0; seq < nextSeq[key]; seq++) expected.add(seq);
+            assertThat(publisher.sequence("key-" + key)).as("key-%d", key).containsExactlyElementsOf(expected);
+        }
+        assertThat(publisher.overlaps()).isZero();
+        assertThat(publisher.failures()).isPositive();
+        assertThat(outbox.retried()).isPositive();
+        assertThat(publisher.threads()).hasSizeGreaterThan(1);
+    }
+
+    /**
+     * Pending rows of one partition, oldest first, minus rows not due and
+     * rows whose key has an earlier row waiting for a retry.
+     */
+    private static final class InMemoryOutbox extends GenericOutboxRepository {
+
+        private final List<Row> rows = new ArrayList<>();
+        private final Map<UUID, Row> byId = new ConcurrentHashMap<>();
+        private int retried;
+
+        InMemoryOutbox() {
+            super(null, "outbox_events");
+        }
+
+        synchronized void append(String key, int seq) {
+            Row row = new Row(UUID.randomUUID(), key, seq);
+            rows.add(row);
+            byId.put(row.id, row);
+        }
+
+        @Override
+        public synchronized List<OutboxRecord> claimPending(String pendingStatus, int limit, int partition,
+                                                            int partitions) {
+            Instant now = Instant.now();
+            Set<String> waiting = new HashSet<>();
+            for (Row row : rows) {
+                if (row.pending && row.nextAttemptAt != null && row.nextAttemptAt.isAfter(now)) waiting.add(row.key);
+            }
+            List<OutboxRecord> claimed = new ArrayList<>();
+            for (Row row : rows) {
+                if (claimed.size() == limit) break;
+                if (!row.pending || Math.floorMod(row.key.hashCode(), partitions) != partition) continue;
+                if (row.nextAttemptAt != null && row.nextAttemptAt.isAfter(now)) continue;
+                // an earlier row of the key waits for its retry
+                if (waiting.contains(row.key)) continue;
+                OutboxRecord rec = new OutboxRecord(row.id, row.key + ":" + row.seq);
+                rec.setOrderingKey(row.key);
+                rec.setAttempts(row.attempts);
+                claimed.add(rec);
+            }
+            return claimed;
+        }
+
+        synchronized int retried() {
+            return retried;
+        }
+
+        @Override
+        public synchronized long markSent(Collection<UUID> ids, String sentStatus) {
+            ids.forEach(id -> byId.get(id).pending = false);
+            return ids.size();
+        }
+
+        @Override
+        public synchronized void recordFailure(UUID id, int attempts, Instant nextAttemptAt, String lastError,
+                                               String status) {
+            Row row = byId.get(id);
+            row.attempts = attempts;
+            retried++;
+            row.nextAttemptAt = nextAttemptAt;
+        }
+
+        private static final class Row {
+            final UUID id;
+            final String key;
+            final int seq;
+            boolean pending = true;
+            int attempts;
+            Instant nextAttemptAt;
+
+            Row(UUID id, String key, int seq) {
+                this.id = id;
+                this.key = key;
+                this.seq = seq;
+            }
+        }
+    }
+
+    /**
+     * Records what went out per key. A batch is all or nothing like a JMS
+     * transaction; every 53rd sequence number of a key is rejected twice, in
+     * its batch and again on its own, so it goes through a retry backoff.
+     */
+    private static final class KeyOrderPublisher implements OutboxMessagePublisher {
+
+        private final Map<String, List<Integer>> sequences = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> rejections = new ConcurrentHashMap<>();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger published = new AtomicInteger();
+        private final AtomicInteger overlaps = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void publish(String payload) throws Exception {
+            publishBatch(List.of(payload));
+        }
+
+        @Override
+        public void publishBatch(List<String> payloads) throws Exception {
+            for (String payload : payloads) {
+                int seq = Integer.parseInt(payload.substring(payload.indexOf(':') + 1));
+                if (seq % 53 == 7
+                        && rejections.computeIfAbsent(payload, p -> new AtomicInteger()).getAndIncrement() < 2) {
+                    failures.incrementAndGet();
+                    throw new IllegalStateException("rejected " + payload);
+                }
+            }
+            threads.add(Thread.currentThread().getName());
+            for (String payload : payloads) {
+                String key = payload.substring(0, payload.indexOf(':'));
+                AtomicInteger keyInFlight = inFlight.computeIfAbsent(key, k -> new AtomicInteger());
+                if (keyInFlight.incrementAndGet() > 1) overlaps.incrementAndGet();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(20));
+                sequences.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(Integer.parseInt(payload.substring(key.length() + 1)));
+                keyInFlight.decrementAndGet();
+            }
+            published.addAndGet(payloads.size());
+        }
+
+        int published() {
+            return published.get();
+        }
+
+        List<Integer> sequence(String key) {
+            return sequences.getOrDefault(key, List.of());
+        }
+
+        int overlaps() {
+            return overlaps.get();
+        }
+
+        int failures() {
+            return failures.get();
+        }
+
+        Set<String> threads() {
+            return threads;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.main.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.UncategorizedJmsException;
+
+import com.example.main.config.OutboxProperties;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageFormatException;
+
+/**
+ * Only broker failures count towards the circuit breaker: a batch of records
+ * the broker refuses one by one gets retry tracking, not an open breaker.
+ */
+class OutboxProcessorCircuitBreakerTest {
+
+    private final OutboxProperties props = new OutboxProperties();
+    private final GenericOutboxRepository repository = mock(GenericOutboxRepository.class);
+    private final OutboxCircuitBreaker breaker = new OutboxCircuitBreaker(3, 60_000, 60_000, null);
+    private Exception failure;
+    private OutboxProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        props.setBatchSize(10);
+        props.setMaxAttempts(5);
+        when(repository.claimPending(anyString(), anyInt(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> List.of(record("a"), record("b"), record("c"), record("d")));
+        OutboxMessagePublisher publisher = new OutboxMessagePublisher() {
+            @Override
+            public void publish(String payload) throws Exception {
+                throw failure;
+            }
+
+            @Override
+            public void publishBatch(List<String> payloads) throws Exception {
+                throw failure;
+            }
+        };
+        processor = new OutboxProcessor(repository, publisher, props, null, null, breaker, null);
+    }
+
+    @Test
+    void rejectedRecordsDoNotOpenTheBreaker() {
+        failure = new MessageFormatException("payload is not valid");
+
+        for (int i = 0; i < 5; i++) processor.processOnce();
+
+        assertThat(breaker.getState()).isEqualTo(OutboxCircuitBreaker.State.CLOSED);
+        verify(repository, atLeastOnce())
+                .recordFailure(any(UUID.class), eq(1), any(), anyString(), eq(props.getPendingStatus()));
+    }
+
+    @Test
+    void lostConnectionOpensTheBreaker() {
+        JMSException lost = new JMSException("Could not connect to broker URL");
+        lost.setLinkedException(new ConnectException("Connection refused"));
+        failure = new UncategorizedJmsException(lost);
+
+        for (int i = 0; i < 3; i++) processor.processOnce();
+
+        assertThat(breaker.getState()).isEqualTo(OutboxCircuitBreaker.State.OPEN);
+        // the records are not to blame
+        verify(repository, never()).recordFailure(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void classifiesTransportFailuresAsBrokerFailures() {
+        assertThat(OutboxCircuitBreaker.isBrokerFailure(new IOException("broken pipe"))).isTrue();
+        assertThat(OutboxCircuitBreaker.isBrokerFailure(
+                new IllegalStateException("not confirmed", new TimeoutException()))).isTrue();
+        assertThat(OutboxCircuitBreaker.isBrokerFailure(
+                new jakarta.jms.IllegalStateException("The Session is closed"))).isTrue();
+        assertThat(OutboxCircuitBreaker.isBrokerFailure(new JMSException("message too large"))).isFalse();
+        assertThat(OutboxCircuitBreaker.isBrokerFailure(new IllegalArgumentException("bad payload"))).isFalse();
+    }
+
+    private static OutboxRecord record(String key) {
+        OutboxRecord rec = new OutboxRecord(UUID.randomUUID(), "{\"key\":\"" + key + "\"}");
+        rec.setOrderingKey(key);
+        return rec;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.main.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import com.example.main.config.OutboxProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@link PostgresOutboxListener} against an in-process stand-in for the
+ * LISTEN connection: a JDBC proxy that accepts LISTEN/UNLISTEN and hands out
+ * notifications the test publishes. The poller is real, with a long backoff,
+ * so only a wake-up can make it poll again quickly.
+ */
+class PostgresOutboxListenerTest {
+
+    private static final long LONG_BACKOFF_MS = 60_000;
+
+    private final OutboxProperties props = new OutboxProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OutboxMetrics metrics = new OutboxMetrics(registry, props);
+    private final OutboxProcessor processor = mock(OutboxProcessor.class);
+    private final GenericOutboxRepository repository = mock(GenericOutboxRepository.class);
+    private final NotifyStandIn standIn = new NotifyStandIn();
+    private final AtomicInteger polls = new AtomicInteger();
+
+    private OutboxPoller poller;
+    private PostgresOutboxListener listener;
+
+    @BeforeEach
+    void setUp() {
+        props.setTableName("outbox_events");
+        props.setMinPollingIntervalMs(LONG_BACKOFF_MS);
+        props.setMaxPollingIntervalMs(LONG_BACKOFF_MS);
+        when(repository.isPostgres()).thenReturn(true);
+        when(repository.getNotifyChannel()).thenReturn("outbox_events_pending");
+        when(processor.processOnce(anyInt(), anyInt())).thenAnswer(invocation -> {
+            polls.incrementAndGet();
+            // a drain takes a while, so notifications arriving meanwhile must not queue more drains
+            Thread.sleep(50);
+            return 0;
+        });
+        poller = new OutboxPoller(processor, props, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (listener != null) listener.stop();
+        poller.stop();
+    }
+
+    @Test
+    void notificationWakesThePollerOutOfItsBackoff() {
+        startPollerAndWaitForFirstPoll();
+        listener = new PostgresOutboxListener(standIn.dataSource(), repository, poller, props, metrics, 50);
+        listener.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> standIn.listening() && polls.get() == 2);
+
+        standIn.notify(1);
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> polls.get() == 3);
+        assertThat(notifications()).isEqualTo(1);
+        assertThat(standIn.statements()).contains("LISTEN \"outbox_events_pending\"");
+    }
+
+    @Test
+    void notificationStormIsCoalescedIntoOneDrain() throws InterruptedException {
+        startPollerAndWaitForFirstPoll();
+        listener = new PostgresOutboxListener(standIn.dataSource(), repository, poller, props, metrics, 50);
+        listener.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> standIn.listening() && polls.get() == 2);
+
+        // one delivery carrying many notifications, then a burst of separate ones
+        List<Integer> storm = new ArrayList<>(List.of(500));
+        storm.addAll(Collections.nCopies(200, 1));
+        standIn.notify(storm);
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> notifications() == 700);
+        Thread.sleep(300);
+        assertThat(polls.get() - 2).isBetween(1, 3);
+    }
+
+    @Test
+    void reconnectsAfterTheListenConnectionFails() {
+        startPollerAndWaitForFirstPoll();
+        standIn.failNextConnections(2);
+        listener = new PostgresOutboxListener(standIn.dataSource(), repository, poller, props, metrics, 100);
+        listener.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(standIn::listening);
+        assertThat(standIn.connectionAttempts()).isEqualTo(3);
+        // rows written while nobody listened are picked up on connect
+        await().atMost(Duration.ofSeconds(2)).until(() -> polls.get() == 2);
+
+        standIn.dropConnection();
+        await().atMost(Duration.ofSeconds(5)).until(() -> standIn.connectionAttempts() == 4 && standIn.listening());
+        standIn.notify(1);
+        await().atMost(Duration.ofSeconds(2)).until(() -> notifications() == 1);
+    }
+
+    @Test
+    void fallsBackToPollingWhenTheDatabaseIsNotPostgres() {
+        when(repository.isPostgres()).thenReturn(false);
+        props.setMinPollingIntervalMs(20);
+        props.setMaxPollingIntervalMs(40);
+        poller = new OutboxPoller(processor, props, metrics);
+        listener = new PostgresOutboxListener(standIn.dataSource(), repository, poller, props, metrics, 50);
+
+        listener.start();
+        poller.start();
+
+        assertThat(listener.isRunning()).isFalse();
+        await().atMost(Duration.ofSeconds(5)).until(() -> polls.get() >= 5);
+        assertThat(standIn.connectionAttempts()).isZero();
+        verify(repository, never()).installNotifyTrigger(anyString());
+        verify(processor, atLeast(5)).processOnce(0, 1);
+    }
+
+    @Test
+    void stopEndsTheListenLoopAndUnlistens() {
+        listener = new PostgresOutboxListener(standIn.dataSource(), repository, poller, props, metrics, 50);
+        listener.start();
+        await().atMost(Duration.ofSeconds(5)).until(standIn::listening);
+
+        listener.stop();
+
+        assertThat(listener.isRunning()).isFalse();
+        await().atMost(Duration.ofSeconds(3)).until(() -> standIn.statements().contains("UNLISTEN *"));
+        assertThat(standIn.listening()).isFalse();
+    }
+
+    private long notifications() {
+        return (long) registry.get("outbox.notifications").counter().count();
+    }
+
+    private void startPollerAndWaitForFirstPoll() {
+        poller.start();
+        await().atMost(Duration.ofSeconds(2)).until(() -> polls.get() == 1);
+    }
+
+    /** Hands out proxy connections whose PGConnection side serves queued notifications. */
+    private static final class NotifyStandIn {
+
+        private final PGNotification notification = mock(PGNotification.class);
+        private final BlockingQueue<PGNotification[]> pending = new LinkedBlockingQueue<>();
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connectionAttempts = new AtomicInteger();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+        private volatile boolean listening;
+        private volatile boolean dropped;
+
+        DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DataSource.class},
+                    (proxy, method, args) -> {
+                        if (!method.getName().equals("getConnection")) throw new UnsupportedOperationException();
+                        connectionAttempts.incrementAndGet();
+                        if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                            throw new SQLException("Connection refused");
+                        }
+                        dropped = false;
+                        return connection();
+                    });
+        }
+
+        private Connection connection() {
+            PGConnection pg = (PGConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {PGConnection.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("getNotifications")) throw new UnsupportedOperationException();
+                        if (dropped) throw new SQLException("An I/O error occurred while sending to the backend");
+                        PGNotification[] batch = pending.poll((Integer) args[0], TimeUnit.MILLISECONDS);
+                        return batch == null ? new PGNotification[0] : batch;
+                    });
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "createStatement" -> statement();
+                        case "unwrap" -> pg;
+                        case "setAutoCommit" -> null;
+                        case "close" -> {
+                            listening = false;
+                            yield null;
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Statement.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "execute" -> {
+                            String sql = (String) args[0];
+                            if (dropped) throw new SQLException("This connection has been closed.");
+                            statements.add(sql);
+                            listening = sql.startsWith("LISTEN");
+                            yield false;
+                        }
+                        case "close" -> null;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        void notify(int count) {
+            notify(List.of(count));
+        }
+
+        /** One delivery per element, all queued at once. */
+        void notify(List<Integer> counts) {
+            List<PGNotification[]> batches = new ArrayList<>(counts.size());
+            for (int count : counts) {
+                PGNotification[] batch = new PGNotification[count];
+                Arrays.fill(batch, notification);
+                batches.add(batch);
+            }
+            pending.addAll(batches);
+        }
+
+        void failNextConnections(int count) {
+            failuresLeft.set(count);
+        }
+
+        /** The backend goes away; the next read on the connection fails. */
+        void dropConnection() {
+            dropped = true;
+        }
+
+        boolean listening() {
+            return listening;
+        }
+
+        int connectionAttempts() {
+            return connectionAttempts.get();
+        }
+
+        List<String> statements() {
+            return statements;
+        }
+    }
+}
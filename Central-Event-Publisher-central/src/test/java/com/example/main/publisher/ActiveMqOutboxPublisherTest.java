@@ -0,0 +1,128 @@
+package com.example.main.publisher;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.activemq.ActiveMQMessageProducer;
+import org.apache.activemq.AsyncCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+/**
+ * Async batch sends with a window of one unconfirmed message: a send or a
+ * message that fails before reaching the broker, or one whose confirmation
+ * never comes, must give its window slot back, or every later batch times out
+ * waiting for it; a late confirmation must not give it back twice.
+ */
+class ActiveMqOutboxPublisherTest {
+
+    private static final long SEND_TIMEOUT_MS = 200;
+
+    private final Session session = mock(Session.class);
+    private final ActiveMQMessageProducer producer = mock(ActiveMQMessageProducer.class);
+    private final Set<String> rejectedOnSend = ConcurrentHashMap.newKeySet();
+    private final Set<String> rejectedOnCreate = ConcurrentHashMap.newKeySet();
+    // sends the broker never confirms, with the callback it would have called
+    private final Set<String> unconfirmed = ConcurrentHashMap.newKeySet();
+    private final Map<String, AsyncCallback> pendingCallbacks = new ConcurrentHashMap<>();
+    private ActiveMqOutboxPublisher publisher;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+        when(jmsTemplate.getConnectionFactory()).thenReturn(mock(ConnectionFactory.class));
+        when(jmsTemplate.execute(any(SessionCallback.class), eq(true)))
+                .thenAnswer(invocation -> invocation.<SessionCallback<?>>getArgument(0).doInJms(session));
+        when(session.createQueue(anyString())).thenReturn(mock(Queue.class));
+        when(session.createProducer(any(Queue.class))).thenReturn(producer);
+        when(session.createTextMessage(anyString())).thenAnswer(invocation -> {
+            String payload = invocation.getArgument(0);
+            if (rejectedOnCreate.remove(payload)) throw new JMSException("cannot create " + payload);
+            TextMessage message = mock(TextMessage.class);
+            when(message.getText()).thenReturn(payload);
+            return message;
+        });
+        doAnswer(invocation -> {
+            TextMessage message = invocation.getArgument(0);
+            if (rejectedOnSend.remove(message.getText())) throw new JMSException("connection closed");
+            if (unconfirmed.remove(message.getText())) {
+                pendingCallbacks.put(message.getText(), invocation.getArgument(1));
+                return null;
+            }
+            // the broker confirms straight away
+            invocation.<AsyncCallback>getArgument(1).onSuccess();
+            return null;
+        }).when(producer).send(any(Message.class), any(AsyncCallback.class));
+
+        publisher = new ActiveMqOutboxPublisher(jmsTemplate, "order.event", true, 1, SEND_TIMEOUT_MS);
+    }
+
+    @Test
+    void failedSendReleasesItsWindowSlot() {
+        rejectedOnSend.add("b");
+
+        assertThatThrownBy(() -> publisher.publishBatch(List.of("a", "b", "c")))
+                .hasMessageContaining("connection closed");
+
+        assertThatCode(() -> publisher.publishBatch(List.of("d", "e"))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void failedMessageCreationReleasesItsWindowSlot() {
+        rejectedOnCreate.add("a");
+
+        assertThatThrownBy(() -> publisher.publishBatch(List.of("a", "b")))
+                .hasMessageContaining("cannot create a");
+
+        assertThatCode(() -> publisher.publishBatch(List.of("c"))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void unconfirmedSendReleasesItsWindowSlotOnce() throws JMSException {
+        unconfirmed.add("b");
+
+        // "c" finds the only slot still held by "b"
+        assertThatThrownBy(() -> publisher.publishBatch(List.of("a", "b", "c")))
+                .hasMessageContaining("No outbox send confirmed");
+        assertThatCode(() -> publisher.publishBatch(List.of("d"))).doesNotThrowAnyException();
+
+        pendingCallbacks.remove("b").onSuccess();
+        unconfirmed.addAll(List.of("x", "y"));
+
+        // still a window of one: "y" cannot be sent while "x" is unconfirmed
+        assertThatThrownBy(() -> publisher.publishBatch(List.of("x", "y")))
+                .hasMessageContaining("No outbox send confirmed");
+        verify(producer, never()).send(argThat(message -> text(message).equals("y")), any(AsyncCallback.class));
+    }
+
+    private static String text(Message message) {
+        try {
+            return ((TextMessage) message).getText();
+        } catch (JMSException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dftp.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import com.dftp.Config.ThreadModeSupport.ThreadMode;
+import com.dftp.Service.IngestConcurrencyLimiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Ingest throughput in PLATFORM against VIRTUAL thread mode. One listener
+ * thread receives and hands off, as orderdata.mq has a single consumer in both
+ * modes; the concurrency is in the ingest lanes behind the firm dispatch, which
+ * are threads from the same ThreadModeSupport (modelled by its thread-per-task
+ * executor, capped at the lane count). Each message blocks first outside the
+ * database (parse, status) and then inside an IngestConcurrencyLimiter sized
+ * to the Hikari pool (the ingest transaction). Blocking is simulated with
+ * parkNanos, so the numbers show scheduling and thread costs rather than
+ * database speed.
+ * <p>
+ * VIRTUAL falls back to platform threads below Java 21; run this benchmark
+ * on a 21+ JVM to compare the modes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListenerThreadModeBenchmark {
+
+    private static final int MESSAGES = 2000;
+    // spring.datasource.hikari.maximum-pool-size in application.properties
+    private static final int POOL_SIZE = 20;
+    private static final long OUTSIDE_DB_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long IN_TRANSACTION_NANOS = TimeUnit.MICROSECONDS.toNanos(1000);
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ThreadMode mode;
+
+    // app.ingest.lanes
+    @Param({"20", "200"})
+    private int lanes;
+
+    private SimpleAsyncTaskExecutor executor;
+    private IngestConcurrencyLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        executor = new ThreadModeSupport(mode).taskExecutor("bench-lane-", lanes);
+        limiter = new IngestConcurrencyLimiter(POOL_SIZE, new SimpleMeterRegistry());
+    }
+
+    /** Time per message with MESSAGES arriving at once. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void ingestMessages() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            executor.execute(() -> {
+                try {
+                    LockSupport.parkNanos(OUTSIDE_DB_NANOS);
+                    limiter.run(() -> LockSupport.parkNanos(IN_TRANSACTION_NANOS));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
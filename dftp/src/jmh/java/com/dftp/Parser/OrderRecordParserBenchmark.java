@@ -0,0 +1,65 @@
+package com.dftp.Parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decoding the 766-char fixed-width order record, from a String (MQ/SQS) and
+ * from raw bytes (S3 file lines), plus the firm-only read used for lane routing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderRecordParserBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private OrderRecordParser parser;
+    private String[] records;
+    private byte[][] recordBytes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new OrderRecordParser(new ObjectMapper(), new ClassPathResource("order-record-layouts.json"));
+        records = SampleOrders.generate(RECORDS);
+        recordBytes = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            recordBytes[i] = records[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public ParsedOrder parseString() {
+        return parser.parse(records[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public ParsedOrder parseBytes() {
+        byte[] bytes = recordBytes[next++ & (RECORDS - 1)];
+        return parser.parse(new AsciiCharSequence(bytes, 0, bytes.length));
+    }
+
+    @Benchmark
+    public int firmNumber() {
+        return parser.firmNumber(records[next++ & (RECORDS - 1)]);
+    }
+}
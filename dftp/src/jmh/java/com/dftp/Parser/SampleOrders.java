@@ -0,0 +1,47 @@
+package com.dftp.Parser;
+
+import java.util.Random;
+
+/**
+ * Fixed-width order records in the Trade-Simulator OrderGenerator format
+ * (766 chars, '|' terminated), generated from a fixed seed and timestamp so
+ * every benchmark run sees the same input.
+ */
+public final class SampleOrders {
+
+    private static final String[] NAMES = { "RAHUL K", "PRIYA S", "AMIT P", "NEHA M", "RAVI T", "SITA D", "KIRAN J",
+            "MAYA R" };
+    private static final String DUMMY_DATA = "SOURCEPLATFORMBATCH20250130PROCESSORDERLOADSTATUSPENDINGCHECKSUM7C4A8D09"
+            + "TRADEDETAILSEXECUTIONVENUENYSEORDERTYPEMARKETLIMITPRICEVALIDATIONPASSEDRISKASSESSMENTLOW";
+    private static final String TRADE_TIME = "30012025111500";
+
+    private SampleOrders() {
+    }
+
+    public static String[] generate(int count) {
+        Random random = new Random(42);
+        String[] orders = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder order = new StringBuilder(766);
+            order.append('0');
+            order.append(String.format("%04d", random.nextInt(20) + 1));
+            order.append(String.format("%04d", random.nextInt(20) + 1));
+            order.append(random.nextBoolean() ? 'B' : 'S');
+            order.append(String.format("TXN%013d", Math.abs(random.nextLong()) % 1000000000000L));
+            order.append(TRADE_TIME);
+            order.append(String.format("%016d", random.nextInt(999999) + 10000));
+            order.append(String.format("ACCT%016d", Math.abs(random.nextLong()) % 10000000000000000L));
+            order.append(String.format("%-20s", NAMES[random.nextInt(NAMES.length)]));
+            order.append(String.format("%09d", random.nextInt(999999999)));
+            order.append(String.format("%02d%02d%d", 1 + random.nextInt(28), 1 + random.nextInt(12),
+                    1970 + random.nextInt(35)));
+            order.append("                ");
+            while (order.length() < 765) {
+                order.append(DUMMY_DATA, 0, Math.min(DUMMY_DATA.length(), 765 - order.length()));
+            }
+            order.append('|');
+            orders[i] = order.toString();
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dftp.Service;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.dftp.Entity.OutboxEventEntity;
+import com.dftp.Parser.OrderRecordParser;
+import com.dftp.Parser.SampleOrders;
+import com.dftp.Repository.OutboxEventRepository;
+import com.dftp.Repository.RawOrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Per-message CPU work of an ingest, without the database: checksum, mapping
+ * the payload to the raw order and outbox entities, and the status JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestHotPathBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    private OrderIngestService ingestService;
+    private StatusTrackingService statusTrackingService;
+    private String[] records;
+    private String[] checksums;
+    private UUID orderId;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        OrderRecordParser parser = new OrderRecordParser(new ObjectMapper(),
+                new ClassPathResource("order-record-layouts.json"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // only the parser is used by the code under test; the rest must not be reached
+        statusTrackingService = new StatusTrackingService(new StringRedisTemplate());
+        ingestService = new OrderIngestService(
+                unused(RawOrderRepository.class),
+                unused(ObjectProvider.class),
+                new SafeInboundQueue(1, 1, 0, SafeInboundQueue.OverflowMode.PAUSE, "unused",
+                        unused(ObjectProvider.class), meterRegistry),
+                new ReceivedStatusEmitter(statusTrackingService, unused(OutboxEventRepository.class),
+                        unused(PlatformTransactionManager.class), unused(ObjectProvider.class)),
+                new ChecksumDedupIndex(unused(RawOrderRepository.class), unused(PlatformTransactionManager.class),
+                        false, 0.001, 1, 2.0, 1, meterRegistry),
+                parser,
+                unused(EntityManager.class));
+        records = SampleOrders.generate(RECORDS);
+        checksums = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            checksums[i] = ingestService.generateChecksum(records[i].getBytes());
+        }
+        orderId = UUID.randomUUID();
+    }
+
+    @Benchmark
+    public String checksum() {
+        return ingestService.generateChecksum(records[next++ & (RECORDS - 1)].getBytes());
+    }
+
+    @Benchmark
+    public OutboxEventEntity mapToEntities() {
+        int i = next++ & (RECORDS - 1);
+        return ingestService.buildOutboxEvent(ingestService.newRawOrder(records[i], checksums[i], "MQ"));
+    }
+
+    @Benchmark
+    public String statusJson() {
+        return statusTrackingService.statusPayload(orderId, "MQ", "received");
+    }
+
+    /** A collaborator the benchmarked code never calls; fails loudly if it does. */
+    @SuppressWarnings("unchecked")
+    private static <T> T unused(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "unused " + type.getSimpleName();
+                    default -> throw new UnsupportedOperationException(
+                            type.getSimpleName() + "." + method.getName() + " is outside the benchmark");
+                });
+    }
+}
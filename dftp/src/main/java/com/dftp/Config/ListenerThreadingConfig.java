@@ -0,0 +1,38 @@
+package com.dftp.Config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+
+import jakarta.jms.ConnectionFactory;
+
+/**
+ * Listener threading for app.threads.mode=VIRTUAL. orderdata.mq keeps a single
+ * consumer, as in PLATFORM mode: arrival order is what fixes each firm's order,
+ * and concurrent consumers would reorder a firm's messages before the WAL and
+ * the firm lanes ever see them. The listener only appends and hands off; the
+ * parallelism is behind the firm-lane dispatch in PartitionedIngestWorkers,
+ * whose lanes run on virtual threads in this mode (app.ingest.lanes can go
+ * well past the core count). SqsInboundListener hands its messages to virtual
+ * threads itself; a standard SQS queue has no delivery order to keep. Database
+ * work stays bounded by IngestConcurrencyLimiter, not by thread count.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.mode", havingValue = "VIRTUAL")
+public class ListenerThreadingConfig {
+
+    @Bean
+    public DefaultJmsListenerContainerFactory jmsListenerContainerFactory(
+            DefaultJmsListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            ThreadModeSupport threadModeSupport) {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setTaskExecutor(threadModeSupport.taskExecutor("jms-listener-", 1));
+        // overrides spring.jms.listener.*-concurrency: one consumer keeps per-firm arrival order
+        factory.setConcurrency("1");
+        return factory;
+    }
+}
@@ -0,0 +1,54 @@
+package com.dftp.Config;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out threads for listeners and ingest workers according to
+ * app.threads.mode. VIRTUAL needs a Java 21+ runtime; on older runtimes it
+ * logs a warning and falls back to platform threads, so the same build runs
+ * on both.
+ */
+@Slf4j
+@Component
+public class ThreadModeSupport {
+
+    public enum ThreadMode { PLATFORM, VIRTUAL }
+
+    private final boolean virtual;
+
+    public ThreadModeSupport(@Value("${app.threads.mode:PLATFORM}") ThreadMode mode) {
+        boolean supported = Runtime.version().feature() >= 21;
+        if (mode == ThreadMode.VIRTUAL && !supported) {
+            log.warn("app.threads.mode=VIRTUAL needs Java 21+, running on Java {}; using platform threads",
+                    Runtime.version().feature());
+        }
+        this.virtual = mode == ThreadMode.VIRTUAL && supported;
+        log.info("Listener and ingest threads: {}", virtual ? "virtual" : "platform");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public ThreadFactory threadFactory(String namePrefix) {
+        return virtual
+                ? new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory()
+                : new CustomizableThreadFactory(namePrefix);
+    }
+
+    /** Thread-per-task executor; concurrencyLimit caps tasks in flight, not pool size. */
+    public SimpleAsyncTaskExecutor taskExecutor(String namePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(namePrefix);
+        executor.setVirtualThreads(virtual);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
+}
@@ -0,0 +1,54 @@
+package com.dftp.Entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of one S3 object through file ingest. byteOffset always sits on a
+ * record boundary and is committed together with the records before it, so a
+ * redelivered notification resumes from there.
+ */
+@Entity
+@Table(name = "file_ingest_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileIngestCheckpointEntity {
+
+    /** bucket/key@eTag, so a re-uploaded file is a new ingest */
+    @Id
+    private String id;
+
+    private String bucket;
+
+    private String objectKey;
+
+    private String eTag;
+
+    private Long fileSize;
+
+    private long byteOffset;
+
+    private long recordCount;
+
+    private String status;
+
+    /** SHA-256 of the whole file, set on completion */
+    private String fileChecksum;
+
+    private Instant startedAt;
+
+    private Instant updatedAt;
+
+    @Version
+    private Long version;
+}
@@ -25,6 +25,9 @@ public class OutboxEventEntity {
 
     private UUID rawOrderId;
 
+    // the relay's ordering key: one firm's events are published in created_at order
+    private Integer firmNumber;
+
     private String source;
 
     private String eventType;
@@ -37,5 +40,14 @@ public class OutboxEventEntity {
     private Instant createdAt;
 
     private Instant sentAt;
+
+    // publish retries, maintained by the outbox relay
+    @Builder.Default
+    private Integer attempts = 0;
+
+    private Instant nextAttemptAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
 }
 
@@ -1,11 +1,13 @@
 package com.dftp.Entity;
 
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -13,7 +15,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "raw_orders")
+@Table(name = "raw_orders", indexes = {
+        @Index(name = "uq_raw_orders_checksum", columnList = "checksum", unique = true),
+        @Index(name = "idx_raw_orders_firm_trade_time", columnList = "firm_number, trade_time")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -39,5 +44,14 @@ public class RawOrderEntity {
     private String checksum;
 
     private Instant receivedAt;
+
+    // Typed columns decoded from the fixed-width record; null when no layout matched
+    private String layoutVersion;
+    private Integer firmNumber;
+    private Integer fundNumber;
+    private Character side;
+    private String txnId;
+    private Long amount;
+    private LocalDateTime tradeTime;
 }
 
@@ -0,0 +1,82 @@
+package com.dftp.Parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * One version of the fixed-width order record, as described in
+ * order-record-layouts.json. Offsets are 0-based character positions.
+ */
+@Data
+public class OrderRecordLayout {
+
+    public enum FieldType { CHAR, INT, LONG, STRING, DATE, DATETIME }
+
+    private String version;
+
+    private int recordLength;
+
+    /** optional last character of the record, used to tell versions apart */
+    private String terminator;
+
+    private Map<String, FieldSpec> fields = new LinkedHashMap<>();
+
+    public FieldSpec field(String name) {
+        return fields.get(name);
+    }
+
+    boolean matches(CharSequence record) {
+        if (record.length() != recordLength) return false;
+        return terminator == null || terminator.isEmpty()
+                || record.charAt(recordLength - 1) == terminator.charAt(0);
+    }
+
+    void validate() {
+        fields.forEach((name, spec) -> {
+            if (spec.getOffset() < 0 || spec.getLength() <= 0 || spec.getOffset() + spec.getLength() > recordLength) {
+                throw new IllegalStateException("Field " + name + " of layout " + version + " is outside the record");
+            }
+            if (spec.getType() == null) {
+                throw new IllegalStateException("Field " + name + " of layout " + version + " has no type");
+            }
+            spec.compilePattern();
+        });
+    }
+
+    @Data
+    public static class FieldSpec {
+
+        private int offset;
+        private int length;
+        private FieldType type;
+
+        /** date pattern built from dd, MM, yyyy, HH, mm, ss */
+        private String pattern;
+
+        // filled by compilePattern(): position of each date token, -1 when absent
+        private int day = -1;
+        private int month = -1;
+        private int year = -1;
+        private int hour = -1;
+        private int minute = -1;
+        private int second = -1;
+
+        void compilePattern() {
+            if (type != FieldType.DATE && type != FieldType.DATETIME) return;
+            if (pattern == null || pattern.length() != length) {
+                throw new IllegalStateException("Date field needs a pattern of length " + length + ", got " + pattern);
+            }
+            day = pattern.indexOf("dd");
+            month = pattern.indexOf("MM");
+            year = pattern.indexOf("yyyy");
+            hour = pattern.indexOf("HH");
+            minute = pattern.indexOf("mm");
+            second = pattern.indexOf("ss");
+            if (day < 0 || month < 0 || year < 0) {
+                throw new IllegalStateException("Date pattern " + pattern + " needs dd, MM and yyyy");
+            }
+        }
+    }
+}
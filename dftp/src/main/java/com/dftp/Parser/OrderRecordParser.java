@@ -0,0 +1,133 @@
+package com.dftp.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.dftp.Parser.OrderRecordLayout.FieldSpec;
+import com.dftp.Parser.OrderRecordLayout.FieldType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decodes fixed-width order records by offset, straight from the character
+ * (or {@link AsciiCharSequence} byte) buffer. Numeric and date fields are read
+ * digit by digit without substrings; only String fields allocate their value.
+ * Record versions come from the layout descriptor, so adding a version is a
+ * change to order-record-layouts.json only.
+ */
+@Slf4j
+@Component
+public class OrderRecordParser {
+
+    private final List<OrderRecordLayout> layouts;
+
+    public OrderRecordParser(ObjectMapper objectMapper,
+                             @Value("${app.ingest.record-layouts:classpath:order-record-layouts.json}") Resource layoutResource)
+            throws IOException {
+        try (InputStream in = layoutResource.getInputStream()) {
+            this.layouts = List.of(objectMapper.readValue(in, OrderRecordLayout[].class));
+        }
+        layouts.forEach(OrderRecordLayout::validate);
+        log.info("Loaded {} order record layouts from {}", layouts.size(), layoutResource.getDescription());
+    }
+
+    public OrderRecordLayout layoutFor(CharSequence record) {
+        for (OrderRecordLayout layout : layouts) {
+            if (layout.matches(record)) return layout;
+        }
+        return null;
+    }
+
+    /**
+     * @return typed fields, or null when no layout matches the record
+     * @throws IllegalArgumentException when a field does not hold what its layout says
+     */
+    public ParsedOrder parse(CharSequence record) {
+        OrderRecordLayout layout = layoutFor(record);
+        if (layout == null) return null;
+
+        FieldSpec side = layout.field("side");
+        FieldSpec amount = layout.field("amount");
+        return new ParsedOrder(
+                layout.getVersion(),
+                intField(record, layout, "firm"),
+                intField(record, layout, "fund"),
+                side == null ? null : record.charAt(side.getOffset()),
+                stringField(record, layout.field("txnId")),
+                amount == null ? null : parseLong(record, amount.getOffset(), amount.getLength(), "amount"),
+                dateTimeField(record, layout, "tradeTime"));
+    }
+
+    /**
+     * Firm number only, for routing without decoding the rest of the record.
+     * @return the firm number, or -1 when it cannot be read
+     */
+    public int firmNumber(CharSequence record) {
+        OrderRecordLayout layout = layoutFor(record);
+        FieldSpec firm = layout == null ? null : layout.field("firm");
+        if (firm == null) return -1;
+        try {
+            return (int) parseLong(record, firm.getOffset(), firm.getLength(), "firm");
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static Integer intField(CharSequence record, OrderRecordLayout layout, String name) {
+        FieldSpec spec = layout.field(name);
+        return spec == null ? null : (int) parseLong(record, spec.getOffset(), spec.getLength(), name);
+    }
+
+    private static String stringField(CharSequence record, FieldSpec spec) {
+        if (spec == null) return null;
+        int start = spec.getOffset();
+        int end = start + spec.getLength();
+        while (start < end && record.charAt(start) == ' ') start++;
+        while (end > start && record.charAt(end - 1) == ' ') end--;
+        return record.subSequence(start, end).toString();
+    }
+
+    private static LocalDateTime dateTimeField(CharSequence record, OrderRecordLayout layout, String name) {
+        FieldSpec spec = layout.field(name);
+        if (spec == null) return null;
+
+        int base = spec.getOffset();
+        int year = (int) parseLong(record, base + spec.getYear(), 4, name);
+        int month = (int) parseLong(record, base + spec.getMonth(), 2, name);
+        int day = (int) parseLong(record, base + spec.getDay(), 2, name);
+        if (spec.getType() == FieldType.DATE) {
+            return LocalDate.of(year, month, day).atStartOfDay();
+        }
+        int hour = spec.getHour() < 0 ? 0 : (int) parseLong(record, base + spec.getHour(), 2, name);
+        int minute = spec.getMinute() < 0 ? 0 : (int) parseLong(record, base + spec.getMinute(), 2, name);
+        int second = spec.getSecond() < 0 ? 0 : (int) parseLong(record, base + spec.getSecond(), 2, name);
+        return LocalDateTime.of(year, month, day, hour, minute, second);
+    }
+
+    /** Leading spaces are allowed (right-aligned numbers), anything else must be a digit. */
+    static long parseLong(CharSequence record, int offset, int length, String name) {
+        long value = 0;
+        int end = offset + length;
+        int i = offset;
+        while (i < end && record.charAt(i) == ' ') i++;
+        if (i == end) {
+            throw new IllegalArgumentException("Field " + name + " at offset " + offset + " is blank");
+        }
+        for (; i < end; i++) {
+            int digit = record.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Field " + name + " at offset " + offset + " is not numeric");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
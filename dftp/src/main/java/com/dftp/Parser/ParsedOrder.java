@@ -0,0 +1,17 @@
+package com.dftp.Parser;
+
+import java.time.LocalDateTime;
+
+/**
+ * Typed columns decoded from a fixed-width order record. Any field the layout
+ * does not define is null.
+ */
+public record ParsedOrder(
+        String layoutVersion,
+        Integer firmNumber,
+        Integer fundNumber,
+        Character side,
+        String txnId,
+        Long amount,
+        LocalDateTime tradeTime) {
+}
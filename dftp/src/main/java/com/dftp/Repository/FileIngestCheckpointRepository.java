@@ -0,0 +1,35 @@
+package com.dftp.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.dftp.Entity.FileIngestCheckpointEntity;
+
+import jakarta.persistence.LockModeType;
+
+public interface FileIngestCheckpointRepository extends JpaRepository<FileIngestCheckpointEntity, String> {
+
+    /** Creates the checkpoint of a new object; a row another instance created first is left as it is. */
+    @Modifying
+    @Query(value = "INSERT INTO file_ingest_checkpoints (id, bucket, object_key, e_tag, file_size, byte_offset,"
+            + " record_count, status, started_at, updated_at, version)"
+            + " VALUES (:id, :bucket, :objectKey, :eTag, :fileSize, 0, 0, :status, :now, :now, 0)"
+            + " ON CONFLICT (id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("bucket") String bucket,
+                       @Param("objectKey") String objectKey,
+                       @Param("eTag") String eTag,
+                       @Param("fileSize") Long fileSize,
+                       @Param("status") String status,
+                       @Param("now") Instant now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from FileIngestCheckpointEntity c where c.id = :id")
+    Optional<FileIngestCheckpointEntity> findForUpdate(@Param("id") String id);
+}
@@ -1,14 +1,26 @@
-
 package com.dftp.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.dftp.Entity.OutboxEventEntity;
 
 public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, UUID> {
 
     List<OutboxEventEntity> findByStatus(String status);
+
+    List<OutboxEventEntity> findByStatusAndCreatedAtBeforeOrderByCreatedAt(String status, Instant before, Pageable page);
+
+    /** Moves the given events from one status to another; rows no longer in {@code from} are left alone. */
+    @Modifying
+    @Query("update OutboxEventEntity e set e.status = :to where e.id in :ids and e.status = :from")
+    int updateStatus(@Param("ids") Collection<UUID> ids, @Param("from") String from, @Param("to") String to);
 }
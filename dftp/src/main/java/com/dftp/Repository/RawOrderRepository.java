@@ -1,13 +1,30 @@
 
 package com.dftp.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import com.dftp.Entity.RawOrderEntity;
 
+import jakarta.persistence.QueryHint;
+
 public interface RawOrderRepository extends JpaRepository<RawOrderEntity, UUID> {
     Optional<RawOrderEntity> findByChecksum(String checksum);
+
+    @Query("select r.checksum from RawOrderEntity r where r.checksum in :checksums")
+    List<String> findExistingChecksums(@Param("checksums") Collection<String> checksums);
+
+    /** Server-side cursor over all checksums; must be consumed inside a transaction. */
+    @Query("select r.checksum from RawOrderEntity r")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<String> streamAllChecksums();
 }
@@ -0,0 +1,75 @@
+package com.dftp.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over hex SHA-256 checksums.
+ * The checksum is already a uniform hash, so the two base hashes are read
+ * straight from its hex digits and combined as h1 + i*h2 (Kirsch-Mitzenmacher).
+ */
+class ChecksumBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final AtomicLong inserted = new AtomicLong();
+
+    ChecksumBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64));
+        this.bitCount = (long) bits.length() * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.capacity = n;
+    }
+
+    void put(String checksum) {
+        long h1 = hexToLong(checksum, 0);
+        long h2 = hexToLong(checksum, 16) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) break;
+            }
+        }
+        inserted.incrementAndGet();
+    }
+
+    boolean mightContain(String checksum) {
+        long h1 = hexToLong(checksum, 0);
+        long h2 = hexToLong(checksum, 16) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isSaturated() {
+        return inserted.get() > capacity;
+    }
+
+    long getInserted() {
+        return inserted.get();
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    private static long hexToLong(String hex, int from) {
+        long value = 0;
+        int end = Math.min(hex.length(), from + 16);
+        for (int i = from; i < end; i++) {
+            value = (value << 4) | (Character.digit(hex.charAt(i), 16) & 0xf);
+        }
+        return value;
+    }
+}
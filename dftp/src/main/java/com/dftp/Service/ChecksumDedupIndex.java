@@ -0,0 +1,260 @@
+package com.dftp.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dftp.Repository.RawOrderRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers "does this checksum already exist in raw_orders" without a query in
+ * the common case. Recently seen checksums are kept in an LRU (exact answer for
+ * resends), everything else goes through a Bloom filter built from a streaming
+ * scan at startup; only Bloom-positive checksums fall through to the database.
+ * The filter only knows what this JVM stored or scanned, so a negative can be
+ * wrong for a row another replica stored since: the unique index on
+ * raw_orders.checksum rejects that insert, and {@link #recordConflict} makes
+ * the next lookup of those checksums ask the database.
+ */
+@Slf4j
+@Component
+public class ChecksumDedupIndex {
+
+    private final RawOrderRepository rawOrderRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final double targetFalsePositiveRate;
+    private final long minCapacity;
+    private final double growthFactor;
+    private final Map<String, Boolean> recent;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    /** checksums whose insert hit the unique index; looked up in the DB whatever the filter says */
+    private final Set<String> conflicted = ConcurrentHashMap.newKeySet();
+
+    /** null until the first build finishes; lookups go to the DB until then */
+    private volatile ChecksumBloomFilter bloom;
+    /** filter currently being built, so inserts during the scan are not missed */
+    private volatile ChecksumBloomFilter building;
+
+    private final Counter lruHits;
+    private final Counter bloomNegatives;
+    private final Counter dbHits;
+    private final Counter falsePositives;
+    private final Counter unindexedLookups;
+    private final Counter conflicts;
+
+    public ChecksumDedupIndex(RawOrderRepository rawOrderRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.dedup.enabled:true}") boolean enabled,
+                              @Value("${app.dedup.bloom.false-positive-rate:0.001}") double falsePositiveRate,
+                              @Value("${app.dedup.bloom.min-capacity:1000000}") long minCapacity,
+                              @Value("${app.dedup.bloom.growth-factor:2.0}") double growthFactor,
+                              @Value("${app.dedup.lru-size:100000}") int lruSize,
+                              MeterRegistry meterRegistry) {
+        this.rawOrderRepository = rawOrderRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.targetFalsePositiveRate = falsePositiveRate;
+        this.minCapacity = minCapacity;
+        this.growthFactor = growthFactor;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > lruSize;
+            }
+        });
+
+        lruHits = lookupCounter(meterRegistry, "lru_hit");
+        bloomNegatives = lookupCounter(meterRegistry, "bloom_negative");
+        dbHits = lookupCounter(meterRegistry, "db_hit");
+        falsePositives = lookupCounter(meterRegistry, "false_positive");
+        unindexedLookups = lookupCounter(meterRegistry, "unindexed");
+        conflicts = Counter.builder("dedup.conflicts").register(meterRegistry);
+
+        Gauge.builder("dedup.hit.rate", this, ChecksumDedupIndex::hitRate).register(meterRegistry);
+        Gauge.builder("dedup.miss.rate", this, ChecksumDedupIndex::missRate).register(meterRegistry);
+        Gauge.builder("dedup.false.positive.rate", this, ChecksumDedupIndex::falsePositiveRate).register(meterRegistry);
+    }
+
+    public boolean isDuplicate(String checksum) {
+        return !findExisting(List.of(checksum)).isEmpty();
+    }
+
+    /**
+     * @return the subset of checksums that already exist, using at most one query
+     */
+    public Set<String> findExisting(Collection<String> checksums) {
+        if (!enabled) {
+            return new HashSet<>(rawOrderRepository.findExistingChecksums(checksums));
+        }
+
+        ChecksumBloomFilter filter = bloom;
+        Set<String> existing = new HashSet<>();
+        List<String> candidates = new ArrayList<>();
+        for (String checksum : checksums) {
+            if (recent.get(checksum) != null) {
+                existing.add(checksum);
+                lruHits.increment();
+            } else if (filter != null && !conflicted.contains(checksum) && !filter.mightContain(checksum)) {
+                bloomNegatives.increment();
+            } else {
+                candidates.add(checksum);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            Set<String> found = new HashSet<>(rawOrderRepository.findExistingChecksums(candidates));
+            found.forEach(this::add);
+            conflicted.removeAll(candidates);
+            existing.addAll(found);
+            if (filter != null) {
+                dbHits.increment(found.size());
+                falsePositives.increment(candidates.size() - found.size());
+            } else {
+                unindexedLookups.increment(candidates.size());
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Register checksums of newly stored orders. Inside a transaction they are only
+     * added after commit, so a rollback never leaves a phantom duplicate behind.
+     */
+    public void recordStored(Collection<String> checksums) {
+        if (!enabled || checksums.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> copy = List.copyOf(checksums);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    copy.forEach(ChecksumDedupIndex.this::add);
+                }
+            });
+        } else {
+            checksums.forEach(this::add);
+        }
+    }
+
+    public void recordStored(String checksum) {
+        recordStored(List.of(checksum));
+    }
+
+    /**
+     * An insert of one of these checksums was rejected by the unique index
+     * although the lookup said absent, so some other instance stored it.
+     */
+    public void recordConflict(Collection<String> checksums) {
+        if (!enabled || checksums.isEmpty()) return;
+        conflicts.increment();
+        conflicted.addAll(checksums);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) rebuildInBackground();
+    }
+
+    @Scheduled(fixedDelayString = "${app.dedup.rebuild-check-ms:600000}")
+    public void rebuildIfSaturated() {
+        ChecksumBloomFilter filter = bloom;
+        if (filter == null) return;
+
+        log.info("Dedup index: {} checksums in filter (capacity {}), hit rate {}, miss rate {}, false positive rate {}",
+                filter.getInserted(), filter.getCapacity(), hitRate(), missRate(), falsePositiveRate());
+        if (filter.isSaturated()) {
+            log.info("Dedup Bloom filter is over capacity, rebuilding");
+            rebuildInBackground();
+        }
+    }
+
+    private void rebuildInBackground() {
+        Thread t = new Thread(this::rebuild, "dedup-index-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        try {
+            long start = System.nanoTime();
+            long rows = rawOrderRepository.count();
+            long capacity = Math.max(minCapacity, (long) (rows * growthFactor));
+            ChecksumBloomFilter next = new ChecksumBloomFilter(capacity, targetFalsePositiveRate);
+            building = next;
+
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<String> checksums = rawOrderRepository.streamAllChecksums()) {
+                    checksums.filter(c -> c != null).forEach(next::put);
+                }
+            });
+
+            bloom = next;
+            log.info("Built dedup Bloom filter from {} checksums (capacity {}) in {} ms",
+                    next.getInserted(), capacity, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.error("Failed to build dedup Bloom filter, duplicate checks keep using the database", e);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    double hitRate() {
+        double total = totalLookups();
+        return total == 0 ? 0 : (lruHits.count() + dbHits.count()) / total;
+    }
+
+    double missRate() {
+        double total = totalLookups();
+        return total == 0 ? 0 : (bloomNegatives.count() + falsePositives.count()) / total;
+    }
+
+    double falsePositiveRate() {
+        double positives = dbHits.count() + falsePositives.count();
+        return positives == 0 ? 0 : falsePositives.count() / positives;
+    }
+
+    /** lookups answered while no filter was built are not part of the rates */
+    private double totalLookups() {
+        return lruHits.count() + bloomNegatives.count() + dbHits.count() + falsePositives.count();
+    }
+
+    private void add(String checksum) {
+        ChecksumBloomFilter filter = bloom;
+        if (filter != null) filter.put(checksum);
+        ChecksumBloomFilter next = building;
+        if (next != null) next.put(checksum);
+        recent.put(checksum, Boolean.TRUE);
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("dedup.lookups").tag("result", result).register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.dftp.Service;
+
+/**
+ * The payload's checksum is already stored. A permanent rejection: retrying or
+ * replaying the message can only hit the same checksum again.
+ */
+public class DuplicateOrderException extends RuntimeException {
+
+    public DuplicateOrderException(String checksum) {
+        super("Duplicate data. Checksum already exists: " + checksum);
+    }
+}
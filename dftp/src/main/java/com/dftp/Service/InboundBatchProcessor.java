@@ -0,0 +1,108 @@
+package com.dftp.Service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingests a drained group of MQ messages, either as one batch transaction or,
+ * with batching off, one transaction per message.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InboundBatchProcessor {
+
+    private final OrderIngestService ingestService;
+    private final IngestConcurrencyLimiter concurrencyLimiter;
+    private final InboundWriteAheadLog writeAheadLog;
+
+    @Value("${app.ingest.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${app.ingest.batch.max-size:100}")
+    private int batchMaxSize;
+
+    @Value("${app.ingest.batch.max-wait-ms:50}")
+    private long batchMaxWaitMs;
+
+    @Value("${app.ingest.retry.attempts:3}")
+    private int retryAttempts;
+
+    @Value("${app.ingest.retry.backoff-ms:500}")
+    private long retryBackoffMs;
+
+    public int maxBatchSize() {
+        return batchEnabled ? batchMaxSize : 1;
+    }
+
+    public long maxWaitMs() {
+        return batchEnabled ? batchMaxWaitMs : 0;
+    }
+
+    /**
+     * A message's write-ahead log position is released once it has committed
+     * or was rejected as a duplicate. Any other failure is retried here a few
+     * times; a message that still fails keeps its position, which pins the WAL
+     * cursor so the message is replayed on the next start.
+     */
+    public void process(List<InboundMessage> messages) {
+        writeAheadLog.release(ingest(messages));
+    }
+
+    /** @return the messages that committed or were rejected for good */
+    private List<InboundMessage> ingest(List<InboundMessage> messages) {
+        if (!batchEnabled || messages.size() == 1) {
+            return messages.stream().filter(this::ingestOne).toList();
+        }
+
+        List<String> payloads = messages.stream().map(InboundMessage::payload).toList();
+        try {
+            concurrencyLimiter.call(() -> ingestService.ingestBatch(payloads, "MQ"));
+            return messages;
+        } catch (Exception e) {
+            // Fall back to one transaction per message so a single bad
+            // message only holds back itself, not the whole batch.
+            log.warn("Batch ingest of {} messages failed, retrying one by one", messages.size(), e);
+            return messages.stream().filter(this::ingestOne).toList();
+        }
+    }
+
+    /** @return true once the message committed or turned out to be a duplicate */
+    private boolean ingestOne(InboundMessage msg) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                concurrencyLimiter.run(() -> ingestService.ingestFromMq(msg.payload()));
+                return true;
+            } catch (DuplicateOrderException e) {
+                log.warn("Dropping MQ message: {}", e.getMessage());
+                return true;
+            } catch (Exception e) {
+                if (attempt > retryAttempts || !backOff(attempt)) {
+                    if (msg.walPosition() == InboundMessage.NOT_LOGGED) {
+                        log.error("Failed to ingest MQ message: {}", e.getMessage());
+                    } else {
+                        log.error("Failed to ingest MQ message at WAL position {}, keeping it for replay: {}",
+                                msg.walPosition(), e.getMessage());
+                    }
+                    return false;
+                }
+                log.warn("Ingest attempt {} of MQ message failed, retrying: {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    private boolean backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.dftp.Service;
+
+/**
+ * An MQ payload on its way to ingest, with its position in the inbound
+ * write-ahead log ({@link #NOT_LOGGED} when the log is disabled).
+ */
+public record InboundMessage(String payload, long walPosition) {
+
+    public static final long NOT_LOGGED = -1;
+
+    public static InboundMessage of(String payload) {
+        return new InboundMessage(payload, NOT_LOGGED);
+    }
+}
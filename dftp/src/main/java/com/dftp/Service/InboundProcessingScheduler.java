@@ -1,5 +1,8 @@
 package com.dftp.Service;
 
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -10,14 +13,20 @@ import lombok.RequiredArgsConstructor;
 public class InboundProcessingScheduler {
 
     private final SafeInboundQueue queue;
-    private final OrderIngestService ingestService;
+    private final InboundBatchProcessor batchProcessor;
+
+    @Value("${app.ingest.lanes:0}")
+    private int lanes;
 
-    @Scheduled(fixedDelay = 1000) 
+    @Scheduled(fixedDelay = 1000)
     public void pollAndProcess() {
 
-        String msg;
-        while ((msg = queue.poll()) != null) {   
-            ingestService.ingestFromMq(msg);     
+        // with lanes configured, PartitionedIngestWorkers drain the queue continuously
+        if (lanes > 0) return;
+
+        List<InboundMessage> batch;
+        while (!(batch = queue.drainBatch(batchProcessor.maxBatchSize(), batchProcessor.maxWaitMs())).isEmpty()) {
+            batchProcessor.process(batch);
         }
     }
 }
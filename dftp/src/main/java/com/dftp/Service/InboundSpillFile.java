@@ -0,0 +1,98 @@
+package com.dftp.Service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only overflow file for {@link SafeInboundQueue}.
+ * Records are written as [int length][long WAL position][UTF-8 bytes] and read
+ * back in the same order; once the reader catches up with the writer the file
+ * is truncated.
+ * Records still in the file survive a restart and are replayed first.
+ */
+@Slf4j
+class InboundSpillFile {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final Path path;
+    private final RandomAccessFile file;
+    private long readPosition;
+    private long pending;
+
+    InboundSpillFile(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.pending = countRecords();
+        if (pending > 0) {
+            log.info("Found {} spilled messages in {}, they will be replayed", pending, path);
+        }
+    }
+
+    /** @return bytes written */
+    synchronized int append(InboundMessage msg) throws IOException {
+        byte[] bytes = msg.payload().getBytes(StandardCharsets.UTF_8);
+        file.seek(file.length());
+        file.writeInt(bytes.length);
+        file.writeLong(msg.walPosition());
+        file.write(bytes);
+        pending++;
+        return bytes.length + HEADER_BYTES;
+    }
+
+    synchronized InboundMessage next() throws IOException {
+        if (pending == 0) return null;
+
+        file.seek(readPosition);
+        byte[] bytes = new byte[file.readInt()];
+        long walPosition = file.readLong();
+        file.readFully(bytes);
+        readPosition = file.getFilePointer();
+        pending--;
+
+        if (pending == 0) {
+            file.setLength(0);
+            readPosition = 0;
+        }
+        return new InboundMessage(new String(bytes, StandardCharsets.UTF_8), walPosition);
+    }
+
+    synchronized long pending() {
+        return pending;
+    }
+
+    synchronized void close() throws IOException {
+        file.close();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    private long countRecords() throws IOException {
+        long count = 0;
+        long pos = 0;
+        long length = file.length();
+        while (pos + HEADER_BYTES <= length) {
+            file.seek(pos);
+            int len = file.readInt();
+            if (pos + HEADER_BYTES + len > length) break;
+            pos += HEADER_BYTES + len;
+            count++;
+        }
+        if (pos < length) {
+            // torn write from a crash mid-append: drop the tail
+            log.warn("Truncating partial record at offset {} in {}", pos, path);
+            file.setLength(pos);
+        }
+        return count;
+    }
+}
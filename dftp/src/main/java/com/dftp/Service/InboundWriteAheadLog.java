@@ -0,0 +1,402 @@
+package com.dftp.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-ahead log for inbound MQ messages on memory-mapped segment files.
+ * The listener appends each message and waits for the fsync before the JMS
+ * ack; appenders arriving while a force is running share the next one, so a
+ * burst costs one fsync rather than one per message. Positions are released
+ * once their ingest transaction has committed, and the cursor (lowest position
+ * not yet released) is checkpointed to disk. Segments wholly behind the cursor
+ * are recycled. On startup everything from the cursor on is replayed into
+ * {@link SafeInboundQueue} before the listener may append again.
+ * <p>
+ * A record is [int length][long position][int crc32][UTF-8 bytes]. Writing the
+ * position into the record lets replay tell live records from stale bytes
+ * left in a recycled segment. Replay after a crash can repeat messages that
+ * were committed after the last checkpoint; checksum dedup drops those.
+ */
+@Slf4j
+@Component
+public class InboundWriteAheadLog implements SmartLifecycle {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String FREE_SUFFIX = ".free";
+    private static final String CURSOR_FILE = "cursor";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int recycleSegments;
+    private final SafeInboundQueue inboundQueue;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Deque<Path> freeSegments = new ArrayDeque<>();
+    private final ConcurrentSkipListSet<Long> unreleased = new ConcurrentSkipListSet<>();
+    private final CountDownLatch replayed = new CountDownLatch(1);
+
+    private final Counter appends;
+    private final Counter fsyncs;
+
+    private Segment current;
+    private FileChannel cursorChannel;
+    private long checkpointedCursor;
+    private volatile long appendPosition;
+    private volatile long durablePosition;
+    // next record still to be replayed; the cursor may not pass it
+    private volatile long replayFrontier = Long.MAX_VALUE;
+    private volatile boolean running;
+
+    public InboundWriteAheadLog(@Value("${app.inbound-wal.enabled:false}") boolean enabled,
+                                @Value("${app.inbound-wal.directory:data/inbound-wal}") String directory,
+                                @Value("${app.inbound-wal.segment-bytes:67108864}") int segmentBytes,
+                                @Value("${app.inbound-wal.recycle-segments:2}") int recycleSegments,
+                                SafeInboundQueue inboundQueue,
+                                MeterRegistry meterRegistry) throws IOException {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.recycleSegments = recycleSegments;
+        this.inboundQueue = inboundQueue;
+        this.appends = Counter.builder("inbound.wal.appends").register(meterRegistry);
+        this.fsyncs = Counter.builder("inbound.wal.fsyncs").register(meterRegistry);
+
+        if (!enabled) {
+            replayed.countDown();
+            return;
+        }
+        open();
+        Gauge.builder("inbound.wal.lag.bytes", this, wal -> wal.appendPosition - wal.cursor())
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("inbound.wal.segments", this, wal -> wal.segmentCount()).register(meterRegistry);
+    }
+
+    /**
+     * Makes the message durable and returns it tagged with its log position.
+     * Blocks until startup replay is done and the record has been forced to disk.
+     */
+    public InboundMessage append(String payload) {
+        if (!enabled) return InboundMessage.of(payload);
+        awaitReplay();
+
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        int recordBytes = HEADER_BYTES + bytes.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Inbound message of " + bytes.length
+                    + " bytes does not fit a WAL segment of " + segmentBytes + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        long position;
+        synchronized (appendLock) {
+            if (appendPosition - current.base + recordBytes > segmentBytes) {
+                rollover();
+            }
+            position = appendPosition;
+            int offset = (int) (position - current.base);
+            MappedByteBuffer buffer = current.buffer;
+            buffer.putInt(offset, bytes.length);
+            buffer.putLong(offset + Integer.BYTES, position);
+            buffer.putInt(offset + Integer.BYTES + Long.BYTES, (int) crc.getValue());
+            buffer.put(offset + HEADER_BYTES, bytes);
+            // registered before appendPosition moves past it, see cursor()
+            unreleased.add(position);
+            appendPosition = position + recordBytes;
+        }
+        appends.increment();
+        awaitDurable(position + recordBytes);
+        return new InboundMessage(payload, position);
+    }
+
+    /** Marks messages whose ingest transaction has finished, letting the cursor move past them. */
+    public void release(Collection<InboundMessage> messages) {
+        if (!enabled) return;
+        for (InboundMessage msg : messages) {
+            if (msg.walPosition() != InboundMessage.NOT_LOGGED) {
+                unreleased.remove(msg.walPosition());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.inbound-wal.checkpoint-interval-ms:1000}")
+    public synchronized void checkpoint() {
+        if (!enabled) return;
+
+        long cursor = cursor();
+        if (cursor <= checkpointedCursor) return;
+        try {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES).putLong(0, cursor);
+            cursorChannel.write(value, 0);
+            cursorChannel.force(false);
+            checkpointedCursor = cursor;
+        } catch (IOException e) {
+            log.error("Failed to checkpoint inbound WAL cursor {}", cursor, e);
+            return;
+        }
+        recycleBefore(cursor);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (replayed.getCount() == 0) return;
+
+        new CustomizableThreadFactory("inbound-wal-replay-").newThread(this::replay).start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Before the JMS listener containers, so replay is under way when they start. */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1000;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) return;
+
+        checkpoint();
+        synchronized (appendLock) {
+            current.buffer.force();
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        }
+        cursorChannel.close();
+    }
+
+    long cursor() {
+        long end = appendPosition;
+        Long first = unreleased.isEmpty() ? null : unreleased.first();
+        long cursor = first == null ? end : Math.min(first, end);
+        return Math.min(cursor, replayFrontier);
+    }
+
+    private void awaitReplay() {
+        try {
+            replayed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for inbound WAL replay", e);
+        }
+    }
+
+    private void awaitDurable(long end) {
+        if (durablePosition >= end) return;
+
+        // whoever gets the lock forces everything appended so far; the others
+        // usually find their record already covered when they get in
+        synchronized (syncLock) {
+            if (durablePosition >= end) return;
+            Segment segment;
+            long target;
+            synchronized (appendLock) {
+                segment = current;
+                target = appendPosition;
+            }
+            segment.buffer.force();
+            fsyncs.increment();
+            durablePosition = target;
+        }
+    }
+
+    private void rollover() {
+        // older segments are forced here, so awaitDurable only ever forces the current one
+        current.buffer.force();
+        try {
+            current = openSegment(current.base + segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open inbound WAL segment in " + directory, e);
+        }
+        segments.put(current.base, current);
+        appendPosition = current.base;
+    }
+
+    private void recycleBefore(long cursor) {
+        synchronized (appendLock) {
+            Iterator<Map.Entry<Long, Segment>> it = segments.entrySet().iterator();
+            while (it.hasNext()) {
+                Segment segment = it.next().getValue();
+                if (segment == current || segment.base + segmentBytes > cursor) break;
+                it.remove();
+                try {
+                    segment.channel.close();
+                    if (freeSegments.size() < recycleSegments) {
+                        Path free = directory.resolve(segment.base + FREE_SUFFIX);
+                        Files.move(segment.path, free);
+                        freeSegments.add(free);
+                    } else {
+                        Files.delete(segment.path);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to recycle inbound WAL segment {}", segment.path, e);
+                }
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        cursorChannel = FileChannel.open(directory.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        long cursor = cursorChannel.read(value, 0) == Long.BYTES ? value.getLong(0) : 0;
+        checkpointedCursor = cursor;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(FREE_SUFFIX)) {
+                    freeSegments.add(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(base, openSegment(base, file));
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            long base = cursor - cursor % segmentBytes;
+            current = openSegment(base);
+            segments.put(base, current);
+            appendPosition = Math.max(base, cursor);
+        } else {
+            current = segments.lastEntry().getValue();
+            appendPosition = scanEnd(current, Math.max(current.base, cursor));
+        }
+        durablePosition = appendPosition;
+        replayFrontier = cursor;
+        log.info("Opened inbound WAL in {}: {} segments, {} bytes to replay",
+                directory, segments.size(), Math.max(0, appendPosition - cursor));
+    }
+
+    private void replay() {
+        long replayedCount = 0;
+        List<Segment> toReplay;
+        synchronized (appendLock) {
+            // checkpoints may recycle replayed segments meanwhile
+            toReplay = List.copyOf(segments.values());
+        }
+        try {
+            for (Segment segment : toReplay) {
+                long position = Math.max(segment.base, replayFrontier);
+                byte[] record;
+                while (position < appendPosition && (record = readAt(segment, position)) != null) {
+                    long next = position + HEADER_BYTES + record.length;
+                    unreleased.add(position);
+                    replayFrontier = next;
+                    inboundQueue.push(new InboundMessage(new String(record, StandardCharsets.UTF_8), position));
+                    replayedCount++;
+                    position = next;
+                }
+            }
+        } finally {
+            replayFrontier = Long.MAX_VALUE;
+            replayed.countDown();
+        }
+        if (replayedCount > 0) {
+            log.info("Replayed {} inbound messages from the WAL", replayedCount);
+        }
+    }
+
+    /** @return the position after the last valid record at or after {@code from} */
+    private long scanEnd(Segment segment, long from) {
+        long position = from;
+        byte[] record;
+        while ((record = readAt(segment, position)) != null) {
+            position += HEADER_BYTES + record.length;
+        }
+        return position;
+    }
+
+    /** @return the payload bytes at this position, or null past the segment's last valid record */
+    private byte[] readAt(Segment segment, long position) {
+        int offset = (int) (position - segment.base);
+        if (offset + HEADER_BYTES > segmentBytes) return null;
+
+        ByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) return null;
+        if (buffer.getLong(offset + Integer.BYTES) != position) return null;
+
+        byte[] bytes = new byte[length];
+        buffer.get(offset + HEADER_BYTES, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES + Long.BYTES)) {
+            // torn write from a crash mid-append
+            return null;
+        }
+        return bytes;
+    }
+
+    private Segment openSegment(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        Path free = freeSegments.poll();
+        if (free != null) {
+            // stale records in a reused file fail the position check on replay
+            Files.move(free, path);
+        }
+        return openSegment(base, path);
+    }
+
+    private Segment openSegment(long base, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(base, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+
+    private int segmentCount() {
+        synchronized (appendLock) {
+            return segments.size();
+        }
+    }
+
+    private record Segment(long base, Path path, FileChannel channel, MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.dftp.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Caps how many ingest transactions run at once. Sized to the connection pool
+ * rather than to a thread pool, so listener concurrency (possibly hundreds of
+ * virtual threads) can grow without queueing inside Hikari.
+ */
+@Component
+public class IngestConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final Timer waitTimer;
+
+    public IngestConcurrencyLimiter(
+            @Value("${app.ingest.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.waitTimer = Timer.builder("ingest.concurrency.wait").register(meterRegistry);
+        Gauge.builder("ingest.concurrency.available", permits, Semaphore::availablePermits).register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an ingest slot", e);
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
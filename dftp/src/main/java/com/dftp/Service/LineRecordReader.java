@@ -0,0 +1,77 @@
+package com.dftp.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Splits a byte stream into newline-terminated records with a fixed read
+ * buffer, so only the current record is ever held in memory. Every byte read
+ * from the stream is fed to the digest, and {@link #position()} is the offset
+ * just past the last returned record.
+ */
+class LineRecordReader {
+
+    private final InputStream in;
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int bufferPos;
+    private int bufferLen;
+    private long position;
+    private byte[] line = new byte[1024];
+
+    LineRecordReader(InputStream in, MessageDigest digest, long startPosition) {
+        this.in = in;
+        this.digest = digest;
+        this.position = startPosition;
+    }
+
+    /** @return next record without its line terminator, or null at end of stream */
+    String next() throws IOException {
+        int lineLen = 0;
+        boolean sawAny = false;
+        while (true) {
+            if (bufferPos == bufferLen && !fill()) {
+                return sawAny ? decode(lineLen) : null;
+            }
+            sawAny = true;
+
+            int end = bufferPos;
+            while (end < bufferLen && buffer[end] != '\n') end++;
+            int chunk = end - bufferPos;
+            if (lineLen + chunk > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLen + chunk));
+            }
+            System.arraycopy(buffer, bufferPos, line, lineLen, chunk);
+            lineLen += chunk;
+            position += chunk;
+            bufferPos = end;
+
+            if (end < bufferLen) {
+                // consume the '\n'
+                bufferPos++;
+                position++;
+                return decode(lineLen);
+            }
+        }
+    }
+
+    long position() {
+        return position;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer);
+        bufferPos = 0;
+        bufferLen = Math.max(n, 0);
+        if (n > 0) digest.update(buffer, 0, n);
+        return n > 0;
+    }
+
+    private String decode(int lineLen) {
+        if (lineLen > 0 && line[lineLen - 1] == '\r') lineLen--;
+        return new String(line, 0, lineLen, StandardCharsets.UTF_8);
+    }
+}
@@ -2,17 +2,30 @@
 package com.dftp.Service;
 
 import java.security.MessageDigest;
+import java.time.DateTimeException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.dftp.Entity.OutboxEventEntity;
 import com.dftp.Entity.RawOrderEntity;
-import com.dftp.Repository.OutboxEventRepository;
+import com.dftp.Parser.OrderRecordParser;
+import com.dftp.Parser.ParsedOrder;
 import com.dftp.Repository.RawOrderRepository;
+import com.example.main.core.OutboxRecord;
+import com.example.main.core.OutboxWriter;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -22,9 +35,15 @@ import lombok.extern.slf4j.Slf4j;
 public class OrderIngestService {
 
     private final RawOrderRepository rawOrderRepository;
-    private final OutboxEventRepository outboxRepository;
+    private final ObjectProvider<OutboxWriter> outboxWriter;
     private final SafeInboundQueue safeQueue;
-    private final StatusTrackingService statusTrackingService;
+    private final ReceivedStatusEmitter statusEmitter;
+    private final ChecksumDedupIndex dedupIndex;
+    private final OrderRecordParser recordParser;
+    private final EntityManager entityManager;
+
+    // V6__raw_orders_checksum_unique.sql
+    private static final String CHECKSUM_UNIQUE_INDEX = "uq_raw_orders_checksum";
 
 
     @Transactional
@@ -33,16 +52,11 @@ public class OrderIngestService {
         String checksum = generateChecksum(payload.getBytes());
         checkDuplicate(checksum);
 
-        RawOrderEntity raw = RawOrderEntity.builder()
-//                .id(UUID.fromString(String.valueOf(UUID.fromString(UUID.randomUUID().toString()))))
-                .id(UUID.randomUUID())
-                .source("MQ")
-                .payload(payload)              
-                .checksum(checksum)
-                .receivedAt(Instant.now())
-                .build();
+        RawOrderEntity raw = newRawOrder(payload, checksum, "MQ");
 
         rawOrderRepository.save(raw);
+        flushRawOrders(List.of(checksum));
+        dedupIndex.recordStored(checksum);
         createOutboxEvent(raw);
     }
 
@@ -53,64 +67,209 @@ public void ingestFromSqs(String payload) {
     String checksum = generateChecksum(payload.getBytes());
     checkDuplicate(checksum);
 
-    RawOrderEntity raw = RawOrderEntity.builder()
-            .id(UUID.randomUUID())
-            .source("S3")     
-            .payload(payload)
-            .checksum(checksum)
-            .receivedAt(Instant.now())
-            .build();
+    RawOrderEntity raw = newRawOrder(payload, checksum, "S3");
 
     rawOrderRepository.save(raw);
+    flushRawOrders(List.of(checksum));
+    dedupIndex.recordStored(checksum);
     createOutboxEvent(raw);
 }
 
-    
+
+    /**
+     * Ingest a whole batch in one transaction: one checksum query for the batch,
+     * then plain persists so Hibernate can send the rows as JDBC batch inserts.
+     * Duplicates (against the DB or within the batch) are skipped, not thrown,
+     * so they never roll back the rest of the batch.
+     *
+     * @return number of orders stored
+     */
+    @Transactional
+    public int ingestBatch(List<String> payloads, String source) {
+        return ingestBatch(payloads, source, null, null);
+    }
+
+    /**
+     * Same as {@link #ingestBatch(List, String)} for records split out of a file;
+     * each row keeps the file name, size and detected file type.
+     */
+    @Transactional
+    public int ingestBatch(List<String> payloads, String source, String filename, Long fileSize) {
+
+        Map<String, String> byChecksum = new LinkedHashMap<>();
+        for (String payload : payloads) {
+            String checksum = generateChecksum(payload.getBytes());
+            if (byChecksum.putIfAbsent(checksum, payload) != null) {
+                log.warn("Skipping duplicate within batch, checksum: {}", checksum);
+            }
+        }
+
+        Set<String> existing = dedupIndex.findExisting(byChecksum.keySet());
+
+        List<String> storedChecksums = new ArrayList<>(byChecksum.size());
+        List<OutboxEventEntity> events = new ArrayList<>(byChecksum.size());
+        for (Map.Entry<String, String> entry : byChecksum.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                log.warn("Skipping duplicate data, checksum already exists: {}", entry.getKey());
+                continue;
+            }
+
+            RawOrderEntity raw = newRawOrder(entry.getValue(), entry.getKey(), source);
+            if (filename != null) {
+                raw.setFilename(filename);
+                raw.setFileSize(fileSize);
+                raw.setPayloadType(detectFileType(filename));
+            }
+            entityManager.persist(raw);
+
+            events.add(buildOutboxEvent(raw));
+            storedChecksums.add(entry.getKey());
+        }
+        flushRawOrders(storedChecksums);
+        writeOutboxEvents(events);
+        dedupIndex.recordStored(storedChecksums);
+        statusEmitter.emitAfterCommit(events);
+
+        int stored = storedChecksums.size();
+        log.info("Ingested batch of {} messages from {}: {} stored, {} skipped",
+                payloads.size(), source, stored, payloads.size() - stored);
+        return stored;
+    }
+
+
+    // newRawOrder, applyParsedFields, buildOutboxEvent and generateChecksum are
+    // package-private so the JMH benchmarks (src/jmh) measure the real code.
+
+    RawOrderEntity newRawOrder(String payload, String checksum, String source) {
+        RawOrderEntity raw = RawOrderEntity.builder()
+                .id(UUID.randomUUID())
+                .source(source)
+                .payload(payload)
+                .checksum(checksum)
+                .receivedAt(Instant.now())
+                .build();
+        applyParsedFields(raw);
+        return raw;
+    }
+
+
+    /**
+     * Decode the fixed-width record into the typed columns. A record that does not
+     * match any layout, or is malformed, is still stored; only its typed columns stay empty.
+     */
+    void applyParsedFields(RawOrderEntity raw) {
+        ParsedOrder parsed;
+        try {
+            parsed = recordParser.parse(raw.getPayload());
+        } catch (IllegalArgumentException | DateTimeException e) {
+            log.warn("Could not decode order record, storing payload only: {}", e.getMessage());
+            return;
+        }
+        if (parsed == null) return;
+
+        raw.setLayoutVersion(parsed.layoutVersion());
+        raw.setFirmNumber(parsed.firmNumber());
+        raw.setFundNumber(parsed.fundNumber());
+        raw.setSide(parsed.side());
+        raw.setTxnId(parsed.txnId());
+        raw.setAmount(parsed.amount());
+        raw.setTradeTime(parsed.tradeTime());
+    }
+
+
     private void createOutboxEvent(RawOrderEntity raw) {
 
-        OutboxEventEntity evt = OutboxEventEntity.builder()
+        List<OutboxEventEntity> events = List.of(buildOutboxEvent(raw));
+
+        writeOutboxEvents(events);
+        statusEmitter.emitAfterCommit(events);
+    }
+
+
+    /**
+     * Append the outbox rows through the publisher's OutboxWriter, as
+     * multi-row INSERTs (COPY for large batches) in this transaction instead
+     * of one JPA insert per row. Without the writer they are persisted through JPA.
+     */
+    private void writeOutboxEvents(List<OutboxEventEntity> events) {
+        if (events.isEmpty()) return;
+        OutboxWriter writer = outboxWriter.getIfAvailable();
+        if (writer == null) {
+            events.forEach(entityManager::persist);
+            return;
+        }
+        // the writer bypasses Hibernate, so the raw orders its rows reference must be in the table first
+        entityManager.flush();
+        writer.append(events.stream().map(OrderIngestService::toOutboxRecord).toList(),
+                ReceivedStatusEmitter.STATUS_NEW);
+    }
+
+
+    private static OutboxRecord toOutboxRecord(OutboxEventEntity evt) {
+        OutboxRecord rec = new OutboxRecord(evt.getId(), evt.getPayload());
+        rec.setEventType(evt.getEventType());
+        rec.setSource(evt.getSource());
+        rec.setAggregateId(evt.getRawOrderId().toString());
+        // unparsed orders have no firm and are partitioned by their id, unordered
+        rec.setOrderingKey(evt.getFirmNumber() == null ? null : evt.getFirmNumber().toString());
+        rec.setCreatedAt(evt.getCreatedAt());
+        return rec;
+    }
+
+
+    OutboxEventEntity buildOutboxEvent(RawOrderEntity raw) {
+        return OutboxEventEntity.builder()
 //                .id(UUID.fromString(String.valueOf(UUID.fromString(UUID.randomUUID().toString()))))
                 .id(UUID.randomUUID())
                 .rawOrderId(raw.getId())
+                .firmNumber(raw.getFirmNumber())
                 .source(raw.getSource())
                 .eventType("OrderReceivedEvent")
                 .payload(raw.getPayload())   
-                .status("NEW")
+                .status(ReceivedStatusEmitter.STATUS_NEW)
                 .createdAt(Instant.now())
                 .build();
+    }
 
-        outboxRepository.save(evt);
-        
+
+    /**
+     * Send the raw_orders inserts now, so a checksum the unique index rejects
+     * (stored by another instance since the dedup lookup) surfaces here. The
+     * transaction is rolled back either way; a single message is a duplicate,
+     * a batch fails and its retry looks the conflicting checksums up in the DB.
+     */
+    private void flushRawOrders(List<String> checksums) {
+        if (checksums.isEmpty()) return;
         try {
-            // Send message to Redis cache
-            String redisId = statusTrackingService.sendStatusMessage(
-                raw.getId(), 
-                raw.getSource(), 
-                "received"
-            );
-            
-            // Update status to PENDING after successful Redis send
-            evt.setStatus("PENDING");
-            outboxRepository.save(evt);
-            
-            log.info("Updated outbox status to PENDING for rawOrderId: {} with Redis ID: {}", 
-                raw.getId(), redisId);
-                
-        } catch (Exception e) {
-            log.error("Failed to send status to Redis for rawOrderId: {}", raw.getId(), e);
-            // Keep status as NEW if Redis send fails
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            if (!isChecksumConflict(e)) throw e;
+            dedupIndex.recordConflict(checksums);
+            if (checksums.size() == 1) throw new DuplicateOrderException(checksums.get(0));
+            throw e;
         }
     }
 
 
+    private static boolean isChecksumConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String constraint = violation.getConstraintName();
+                return constraint != null && constraint.toLowerCase().contains(CHECKSUM_UNIQUE_INDEX);
+            }
+        }
+        return false;
+    }
+
+
     private void checkDuplicate(String checksum) {
-        rawOrderRepository.findByChecksum(checksum).ifPresent(x -> {
-            throw new RuntimeException("Duplicate data. Checksum already exists.");
-        });
+        if (dedupIndex.isDuplicate(checksum)) {
+            throw new DuplicateOrderException(checksum);
+        }
     }
 
 
-    private String generateChecksum(byte[] bytes) {
+    String generateChecksum(byte[] bytes) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             byte[] hash = md.digest(bytes);
@@ -135,9 +294,9 @@ public void ingestFromSqs(String payload) {
 
     @Transactional
     public void processInboundMessages() {
-        String msg;
+        InboundMessage msg;
         while ((msg = safeQueue.poll()) != null) {
-            ingestFromMq(msg);
+            ingestFromMq(msg.payload());
         }
     }
 }
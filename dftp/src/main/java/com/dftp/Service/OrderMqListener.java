@@ -3,18 +3,24 @@ package com.dftp.Service;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 @Component
 public class OrderMqListener {
 
     private final SafeInboundQueue safeQueue;
+    private final InboundWriteAheadLog writeAheadLog;
 
-    public OrderMqListener(SafeInboundQueue safeQueue) {
+    public OrderMqListener(SafeInboundQueue safeQueue, InboundWriteAheadLog writeAheadLog) {
         this.safeQueue = safeQueue;
+        this.writeAheadLog = writeAheadLog;
     }
 
-    @JmsListener(destination = "orderdata.mq")
+    @JmsListener(id = SafeInboundQueue.LISTENER_ID, destination = "orderdata.mq")
     public void receiveMessage(String msg) {
-        System.out.println("<<<< RECEIVED FROM MQ >>>> " + msg);
-        safeQueue.push(msg);
+        log.debug("Received from MQ: {}", msg);
+        // with the WAL enabled the message is on disk before the listener returns and acks it
+        safeQueue.push(writeAheadLog.append(msg));
     }
 }
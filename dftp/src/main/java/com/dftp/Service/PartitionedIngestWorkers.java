@@ -0,0 +1,151 @@
+package com.dftp.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.dftp.Config.ThreadModeSupport;
+import com.dftp.Parser.OrderRecordParser;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Continuous, parallel MQ ingest. A dispatcher drains {@link SafeInboundQueue}
+ * and hashes each record by firm number onto one of N lanes; each lane is a
+ * single thread, so records of one firm are ingested strictly in arrival order
+ * while different firms proceed in parallel. Enabled with app.ingest.lanes > 0.
+ */
+@Slf4j
+@Component
+public class PartitionedIngestWorkers {
+
+    private static final long IDLE_POLL_MS = 200;
+
+    private final SafeInboundQueue inboundQueue;
+    private final InboundBatchProcessor batchProcessor;
+    private final OrderRecordParser recordParser;
+    private final MeterRegistry meterRegistry;
+    private final ThreadModeSupport threadModeSupport;
+    private final int laneCount;
+    private final int laneCapacity;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public PartitionedIngestWorkers(SafeInboundQueue inboundQueue,
+                                    InboundBatchProcessor batchProcessor,
+                                    OrderRecordParser recordParser,
+                                    MeterRegistry meterRegistry,
+                                    ThreadModeSupport threadModeSupport,
+                                    @Value("${app.ingest.lanes:0}") int laneCount,
+                                    @Value("${app.ingest.lane-capacity:1000}") int laneCapacity) {
+        this.inboundQueue = inboundQueue;
+        this.batchProcessor = batchProcessor;
+        this.recordParser = recordParser;
+        this.meterRegistry = meterRegistry;
+        this.threadModeSupport = threadModeSupport;
+        this.laneCount = laneCount;
+        this.laneCapacity = laneCapacity;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (laneCount <= 0) return;
+
+        running = true;
+        ThreadFactory laneThreads = threadModeSupport.threadFactory("ingest-lane-");
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(i);
+            lanes.add(lane);
+            threads.add(laneThreads.newThread(lane::run));
+        }
+        threads.add(threadModeSupport.threadFactory("ingest-dispatcher-").newThread(this::dispatch));
+        threads.forEach(Thread::start);
+        log.info("Started {} firm-partitioned ingest lanes", laneCount);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    int laneFor(String msg) {
+        int firm = recordParser.firmNumber(msg);
+        // records without a readable firm carry no ordering guarantee, spread them
+        return Math.floorMod(firm >= 0 ? firm : msg.hashCode(), laneCount);
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                List<InboundMessage> drained = inboundQueue.drainBatch(batchProcessor.maxBatchSize() * laneCount, 0);
+                if (drained.isEmpty()) {
+                    Thread.sleep(10);
+                    continue;
+                }
+                for (InboundMessage msg : drained) {
+                    // a full lane blocks the dispatcher, which backs the inbound queue up
+                    lanes.get(laneFor(msg.payload())).queue.put(msg);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final LinkedBlockingQueue<InboundMessage> queue = new LinkedBlockingQueue<>(laneCapacity);
+        private final Counter processed;
+        private final Timer batchTimer;
+
+        private Lane(int index) {
+            this.index = index;
+            String tag = String.valueOf(index);
+            Gauge.builder("ingest.lane.depth", queue, LinkedBlockingQueue::size)
+                    .tag("lane", tag).register(meterRegistry);
+            processed = Counter.builder("ingest.lane.processed").tag("lane", tag).register(meterRegistry);
+            batchTimer = Timer.builder("ingest.lane.batch.duration").tag("lane", tag).register(meterRegistry);
+        }
+
+        private void run() {
+            int maxBatch = batchProcessor.maxBatchSize();
+            try {
+                // keep going after shutdown until what was already dispatched is stored
+                while (running || !queue.isEmpty()) {
+                    InboundMessage first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+
+                    List<InboundMessage> batch = new ArrayList<>(maxBatch);
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    try {
+                        batchTimer.record(() -> batchProcessor.process(batch));
+                    } catch (RuntimeException e) {
+                        log.error("Ingest lane {} failed on a batch of {} messages", index, batch.size(), e);
+                    }
+                    processed.increment(batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
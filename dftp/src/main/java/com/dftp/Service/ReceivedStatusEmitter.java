@@ -0,0 +1,123 @@
+package com.dftp.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dftp.Entity.OutboxEventEntity;
+import com.dftp.Repository.OutboxEventRepository;
+import com.example.main.core.GenericOutboxRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Emits the "received" status for stored orders and moves their outbox rows
+ * from NEW to PENDING. Nothing is sent while the ingest transaction is open:
+ * events are flushed after commit as one pipelined batch of XADDs followed by
+ * one bulk UPDATE, so Redis latency never holds a DB transaction and a rolled
+ * back order never gets a status. Rows left in NEW (Redis down, crash between
+ * commit and flush) are picked up by {@link #retryNew()}.
+ */
+@Slf4j
+@Component
+public class ReceivedStatusEmitter {
+
+    static final String STATUS_NEW = "NEW";
+    static final String STATUS_PENDING = "PENDING";
+    private static final String RECEIVED = "received";
+
+    private final StatusTrackingService statusTrackingService;
+    private final OutboxEventRepository outboxRepository;
+    private final TransactionTemplate updateTransaction;
+    private final ObjectProvider<GenericOutboxRepository> centralOutbox;
+
+    @Value("${app.status.retry-min-age-ms:10000}")
+    private long retryMinAgeMs;
+
+    @Value("${app.status.retry-batch-size:500}")
+    private int retryBatchSize;
+
+    public ReceivedStatusEmitter(StatusTrackingService statusTrackingService,
+                                 OutboxEventRepository outboxRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectProvider<GenericOutboxRepository> centralOutbox) {
+        this.statusTrackingService = statusTrackingService;
+        this.outboxRepository = outboxRepository;
+        // afterCommit still sees the finished transaction bound, so the flip needs its own
+        this.updateTransaction = new TransactionTemplate(transactionManager);
+        this.updateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.centralOutbox = centralOutbox;
+    }
+
+    /** Sends the status for these events once the surrounding transaction commits. */
+    public void emitAfterCommit(List<OutboxEventEntity> events) {
+        if (events.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<OutboxEventEntity> copy = List.copyOf(events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(copy);
+                }
+            });
+        } else {
+            send(events);
+        }
+    }
+
+    /**
+     * Re-emits rows still in NEW. Rows younger than app.status.retry-min-age-ms
+     * are skipped so an in-flight after-commit flush is not duplicated.
+     */
+    @Scheduled(fixedDelayString = "${app.status.retry-interval-ms:30000}")
+    public void retryNew() {
+        Instant before = Instant.now().minusMillis(retryMinAgeMs);
+        List<OutboxEventEntity> stale;
+        do {
+            stale = outboxRepository.findByStatusAndCreatedAtBeforeOrderByCreatedAt(
+                    STATUS_NEW, before, PageRequest.of(0, retryBatchSize));
+            if (stale.isEmpty()) return;
+
+            log.info("Retrying received status for {} outbox events left in NEW", stale.size());
+        } while (send(stale) && stale.size() == retryBatchSize);
+    }
+
+    /** @return false when Redis was unavailable and the rows stay in NEW */
+    private boolean send(List<OutboxEventEntity> events) {
+        try {
+            statusTrackingService.sendStatusMessages(events, RECEIVED);
+        } catch (RuntimeException e) {
+            log.warn("Received status for {} orders not sent, left in NEW for retry", events.size());
+            return false;
+        }
+
+        List<UUID> ids = events.stream().map(OutboxEventEntity::getId).toList();
+        try {
+            Integer updated = updateTransaction.execute(status -> {
+                int flipped = outboxRepository.updateStatus(ids, STATUS_NEW, STATUS_PENDING);
+                // wakes a LISTENing relay on commit (Postgres only)
+                GenericOutboxRepository relay = centralOutbox.getIfAvailable();
+                if (flipped > 0 && relay != null) relay.notifyPending();
+                return flipped;
+            });
+            log.info("Updated {} outbox events to PENDING", updated);
+            return true;
+        } catch (RuntimeException e) {
+            // the statuses went out; the retrier will send them again (at-least-once)
+            log.error("Failed to move {} outbox events to PENDING", ids.size(), e);
+            return false;
+        }
+    }
+}
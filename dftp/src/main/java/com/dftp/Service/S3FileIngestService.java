@@ -0,0 +1,163 @@
+package com.dftp.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dftp.Entity.FileIngestCheckpointEntity;
+import com.dftp.Repository.FileIngestCheckpointRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Ingests an order file from S3 one record (line) at a time. The object is
+ * streamed, never held in memory, and records are written in batches; each
+ * batch commits together with the file checkpoint so a redelivered S3
+ * notification continues after the last committed record.
+ */
+@Slf4j
+@Service
+public class S3FileIngestService {
+
+    static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+    static final String STATUS_COMPLETED = "COMPLETED";
+
+    private final S3Client s3Client;
+    private final OrderIngestService ingestService;
+    private final FileIngestCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IngestConcurrencyLimiter concurrencyLimiter;
+    private final int batchSize;
+
+    public S3FileIngestService(S3Client s3Client,
+                               OrderIngestService ingestService,
+                               FileIngestCheckpointRepository checkpointRepository,
+                               PlatformTransactionManager transactionManager,
+                               IngestConcurrencyLimiter concurrencyLimiter,
+                               @Value("${app.s3-ingest.batch-size:500}") int batchSize) {
+        this.s3Client = s3Client;
+        this.ingestService = ingestService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.batchSize = batchSize;
+    }
+
+    public void ingestObject(String bucket, String key, Long size, String eTag) throws IOException {
+        FileIngestCheckpointEntity checkpoint = claim(bucket + "/" + key + "@" + eTag, bucket, key, size, eTag);
+
+        if (STATUS_COMPLETED.equals(checkpoint.getStatus())) {
+            log.info("File s3://{}/{} already ingested ({} records), skipping", bucket, key, checkpoint.getRecordCount());
+            return;
+        }
+
+        MessageDigest fileDigest = sha256();
+        long offset = checkpoint.getByteOffset();
+        if (offset > 0) {
+            log.info("Resuming s3://{}/{} at byte {} after {} records", bucket, key, offset, checkpoint.getRecordCount());
+            // the file checksum covers the whole file, so re-hash the part already ingested
+            digestPrefix(bucket, key, eTag, offset, fileDigest);
+        }
+
+        long position = offset;
+        if (size == null || offset < size) {
+            GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(key);
+            if (eTag != null) request.ifMatch(eTag);
+            if (offset > 0) request.range("bytes=" + offset + "-");
+
+            try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(request.build())) {
+                LineRecordReader reader = new LineRecordReader(in, fileDigest, offset);
+                List<String> batch = new ArrayList<>(batchSize);
+                String record;
+                while ((record = reader.next()) != null) {
+                    if (!record.isBlank()) batch.add(record);
+                    if (batch.size() == batchSize) {
+                        checkpoint = commitBatch(checkpoint, batch, reader.position());
+                        batch.clear();
+                    }
+                }
+                position = reader.position();
+                checkpoint.setStatus(STATUS_COMPLETED);
+                checkpoint.setFileChecksum(HexFormat.of().formatHex(fileDigest.digest()));
+                checkpoint = commitBatch(checkpoint, batch, position);
+            }
+        } else {
+            checkpoint.setStatus(STATUS_COMPLETED);
+            checkpoint.setFileChecksum(HexFormat.of().formatHex(fileDigest.digest()));
+            checkpoint = commitBatch(checkpoint, List.of(), position);
+        }
+
+        log.info("Ingested s3://{}/{}: {} records, {} bytes, sha256 {}",
+                bucket, key, checkpoint.getRecordCount(), position, checkpoint.getFileChecksum());
+    }
+
+    /**
+     * Create the object's checkpoint if it is new, then lock it and bump its
+     * version, all in one transaction. A redelivery that arrives while another
+     * instance still streams the object takes it over: the earlier run's next
+     * commit fails the version check and rolls back with its batch, so only
+     * the latest claim moves the checkpoint.
+     */
+    private FileIngestCheckpointEntity claim(String id, String bucket, String key, Long size, String eTag) {
+        return concurrencyLimiter.call(() -> transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            checkpointRepository.insertIfAbsent(id, bucket, key, eTag, size, STATUS_IN_PROGRESS, now);
+            FileIngestCheckpointEntity checkpoint = checkpointRepository.findForUpdate(id)
+                    .orElseThrow(() -> new IllegalStateException("File ingest checkpoint " + id + " not found"));
+            if (STATUS_COMPLETED.equals(checkpoint.getStatus())) return checkpoint;
+            checkpoint.setUpdatedAt(now);
+            return checkpointRepository.saveAndFlush(checkpoint);
+        }));
+    }
+
+    private FileIngestCheckpointEntity commitBatch(FileIngestCheckpointEntity checkpoint, List<String> batch, long position) {
+        // take the slot before opening the transaction so waiting never holds a connection
+        return concurrencyLimiter.call(() -> transactionTemplate.execute(status -> {
+            if (!batch.isEmpty()) {
+                ingestService.ingestBatch(batch, "S3", checkpoint.getObjectKey(), checkpoint.getFileSize());
+            }
+            checkpoint.setByteOffset(position);
+            checkpoint.setRecordCount(checkpoint.getRecordCount() + batch.size());
+            checkpoint.setUpdatedAt(Instant.now());
+            return checkpointRepository.save(checkpoint);
+        }));
+    }
+
+    private void digestPrefix(String bucket, String key, String eTag, long length, MessageDigest digest) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=0-" + (length - 1));
+        if (eTag != null) request.ifMatch(eTag);
+
+        try (InputStream in = s3Client.getObject(request.build())) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
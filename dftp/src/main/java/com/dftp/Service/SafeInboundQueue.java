@@ -1,26 +1,223 @@
 package com.dftp.Service;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.MessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded hand-off between the MQ listener and the ingest workers.
+ * Above the high watermark the listener container is paused (PAUSE) so the
+ * backlog stays on the broker, or overflow goes to a local spill file (SPILL).
+ * Below the low watermark the listener is resumed / the spill is read back.
+ */
+@Slf4j
 @Component
 public class SafeInboundQueue {
 
-    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    public enum OverflowMode { PAUSE, SPILL }
+
+    static final String LISTENER_ID = "orderMqListener";
+
+    private final LinkedBlockingQueue<InboundMessage> queue;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final OverflowMode overflowMode;
+    private final InboundSpillFile spill;
+    private final ObjectProvider<JmsListenerEndpointRegistry> listenerRegistry;
+    private final Object watermarkLock = new Object();
+    private volatile boolean aboveHighWatermark;
+
+    private final Counter highWatermarkCrossings;
+    private final Counter lowWatermarkCrossings;
+    private final Counter spillBytes;
+
+    public SafeInboundQueue(@Value("${app.inbound-queue.capacity:10000}") int capacity,
+                            @Value("${app.inbound-queue.high-watermark:8000}") int highWatermark,
+                            @Value("${app.inbound-queue.low-watermark:2000}") int lowWatermark,
+                            @Value("${app.inbound-queue.overflow-mode:PAUSE}") OverflowMode overflowMode,
+                            @Value("${app.inbound-queue.spill-file:data/inbound-spill.log}") String spillFile,
+                            ObjectProvider<JmsListenerEndpointRegistry> listenerRegistry,
+                            MeterRegistry meterRegistry) throws IOException {
+        if (lowWatermark >= highWatermark || highWatermark > capacity) {
+            throw new IllegalArgumentException("Inbound queue needs low-watermark < high-watermark <= capacity, got "
+                    + lowWatermark + " / " + highWatermark + " / " + capacity);
+        }
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.overflowMode = overflowMode;
+        this.spill = overflowMode == OverflowMode.SPILL ? new InboundSpillFile(Path.of(spillFile)) : null;
+        this.listenerRegistry = listenerRegistry;
+
+        Gauge.builder("inbound.queue.depth", queue, LinkedBlockingQueue::size).register(meterRegistry);
+        Gauge.builder("inbound.queue.capacity", () -> capacity).register(meterRegistry);
+        highWatermarkCrossings = Counter.builder("inbound.queue.watermark.crossings")
+                .tag("watermark", "high").register(meterRegistry);
+        lowWatermarkCrossings = Counter.builder("inbound.queue.watermark.crossings")
+                .tag("watermark", "low").register(meterRegistry);
+        spillBytes = Counter.builder("inbound.queue.spill.bytes").baseUnit("bytes").register(meterRegistry);
+        if (spill != null) {
+            Gauge.builder("inbound.queue.spill.pending", spill, InboundSpillFile::pending).register(meterRegistry);
+        }
+    }
+
+    public void push(InboundMessage msg) {
+        if (overflowMode == OverflowMode.SPILL) {
+            // once anything is spilled, keep spilling so the order is preserved
+            synchronized (spill) {
+                if (spill.pending() > 0 || !queue.offer(msg)) {
+                    spillOut(msg);
+                }
+            }
+        } else {
+            try {
+                // only blocks for the few messages in flight while the listener pauses
+                queue.put(msg);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for inbound queue space", e);
+            }
+        }
+        afterPush();
+    }
 
-    public void push(String msg) {
-        queue.offer(msg);
+    public InboundMessage poll() {
+        refillFromSpill();
+        InboundMessage msg = queue.poll();
+        afterTake();
+        return msg;
     }
 
-    public String poll() {
-        return queue.poll();
+    /**
+     * Drain up to maxSize messages. Returns an empty list straight away when the
+     * queue is empty; otherwise keeps collecting for at most maxWaitMs so that a
+     * trickle of messages still ends up in one batch.
+     */
+    public List<InboundMessage> drainBatch(int maxSize, long maxWaitMs) {
+        List<InboundMessage> batch = new ArrayList<>(maxSize);
+        refillFromSpill();
+        queue.drainTo(batch, maxSize);
+        afterTake();
+        if (batch.isEmpty()) {
+            return batch;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        try {
+            while (batch.size() < maxSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                InboundMessage msg = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (msg == null) break;
+                batch.add(msg);
+                queue.drainTo(batch, maxSize - batch.size());
+                afterTake();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return batch;
     }
 
     public boolean isEmpty() {
-        return queue.isEmpty();
+        return queue.isEmpty() && (spill == null || spill.pending() == 0);
+    }
+
+    public int size() {
+        return queue.size();
     }
 
     public void add(String msg) {
-        queue.add(msg);
+        push(InboundMessage.of(msg));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (spill != null) spill.close();
+    }
+
+    private void spillOut(InboundMessage msg) {
+        try {
+            spillBytes.increment(spill.append(msg));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to spill inbound message to " + spill.getPath(), e);
+        }
+    }
+
+    private void afterPush() {
+        if (aboveHighWatermark || queue.size() < highWatermark) return;
+
+        // transition and pause/resume happen under one lock so a resume can never
+        // be overtaken by a stale pause
+        synchronized (watermarkLock) {
+            if (aboveHighWatermark || queue.size() < highWatermark) return;
+            aboveHighWatermark = true;
+            highWatermarkCrossings.increment();
+            log.warn("Inbound queue reached high watermark ({}), overflow mode {}", highWatermark, overflowMode);
+            if (overflowMode == OverflowMode.PAUSE) {
+                setListenerRunning(false);
+            }
+        }
+    }
+
+    private void afterTake() {
+        refillFromSpill();
+        if (!aboveHighWatermark || queue.size() > lowWatermark) return;
+
+        synchronized (watermarkLock) {
+            if (!aboveHighWatermark || queue.size() > lowWatermark) return;
+            aboveHighWatermark = false;
+            lowWatermarkCrossings.increment();
+            log.info("Inbound queue drained below low watermark ({})", lowWatermark);
+            if (overflowMode == OverflowMode.PAUSE) {
+                setListenerRunning(true);
+            }
+        }
+    }
+
+    private void refillFromSpill() {
+        if (spill == null || spill.pending() == 0) return;
+
+        // producers only offer directly while nothing is spilled, and they hold the
+        // same lock, so the queue cannot fill up underneath this loop
+        synchronized (spill) {
+            try {
+                InboundMessage msg;
+                while (queue.size() < highWatermark && (msg = spill.next()) != null) {
+                    queue.offer(msg);
+                }
+            } catch (IOException e) {
+                log.error("Failed to read back spilled inbound messages from {}", spill.getPath(), e);
+            }
+        }
+    }
+
+    private void setListenerRunning(boolean running) {
+        JmsListenerEndpointRegistry registry = listenerRegistry.getIfAvailable();
+        MessageListenerContainer container = registry == null ? null : registry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            log.warn("No JMS listener container '{}' to {}", LISTENER_ID, running ? "resume" : "pause");
+            return;
+        }
+        if (running) {
+            container.start();
+        } else {
+            container.stop();
+        }
+        log.info("{} JMS listener '{}'", running ? "Resumed" : "Paused", LISTENER_ID);
     }
 }
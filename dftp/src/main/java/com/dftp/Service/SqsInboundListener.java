@@ -1,21 +1,124 @@
 package com.dftp.Service;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import com.dftp.Config.ThreadModeSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.awspring.cloud.sqs.annotation.SqsListener;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class SqsInboundListener {
 
      private final OrderIngestService ingestService;
+     private final S3FileIngestService fileIngestService;
+     private final ObjectMapper objectMapper;
+     private final IngestConcurrencyLimiter concurrencyLimiter;
+     private final AsyncTaskExecutor ingestExecutor;
+
+     @Value("${app.s3-ingest.key-prefix:}")
+     private String keyPrefix;
 
+    public SqsInboundListener(OrderIngestService ingestService,
+                              S3FileIngestService fileIngestService,
+                              ObjectMapper objectMapper,
+                              IngestConcurrencyLimiter concurrencyLimiter,
+                              ThreadModeSupport threadModeSupport,
+                              @Value("${app.threads.sqs-max-concurrency:200}") int sqsMaxConcurrency) {
+        this.ingestService = ingestService;
+        this.fileIngestService = fileIngestService;
+        this.objectMapper = objectMapper;
+        this.concurrencyLimiter = concurrencyLimiter;
+        // awspring only runs its own threads, so virtual mode hands the work off
+        this.ingestExecutor = threadModeSupport.isVirtual()
+                ? threadModeSupport.taskExecutor("sqs-ingest-", sqsMaxConcurrency)
+                : null;
+    }
+
+    /**
+     * The message is acknowledged when the returned future completes, so an
+     * ingest running on a virtual thread still keeps at-least-once delivery.
+     */
     @SqsListener("${aws.sqs.queue-name}")
-    public void handleSqsMessage(String payload) {
+    public CompletableFuture<Void> handleSqsMessage(String payload) {
+        if (ingestExecutor == null) {
+            try {
+                process(payload);
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                process(payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ingestExecutor);
+    }
+
+    private void process(String payload) throws IOException {
+
+        JsonNode s3Records = s3EventRecords(payload);
+        if (s3Records == null) {
+            log.info("Received SQS message: {}", payload);
+            concurrencyLimiter.run(() -> ingestService.ingestFromSqs(payload));
+            return;
+        }
+
+        // An exception here leaves the message on the queue; the redelivery
+        // resumes each file from its checkpoint.
+        for (JsonNode record : s3Records) {
+            String eventName = record.path("eventName").asText("");
+            JsonNode s3 = record.path("s3");
+            String bucket = s3.path("bucket").path("name").asText();
+            // object keys in S3 notifications are URL-encoded
+            String key = URLDecoder.decode(s3.path("object").path("key").asText(), StandardCharsets.UTF_8);
+
+            if (!eventName.startsWith("ObjectCreated") || !key.startsWith(keyPrefix)) {
+                log.debug("Ignoring S3 event {} for s3://{}/{}", eventName, bucket, key);
+                continue;
+            }
+
+            JsonNode object = s3.path("object");
+            Long size = object.has("size") ? object.get("size").asLong() : null;
+            String eTag = object.path("eTag").asText(null);
+            log.info("Received S3 notification for s3://{}/{} ({} bytes)", bucket, key, size);
+            fileIngestService.ingestObject(bucket, key, size, eTag);
+        }
+    }
 
-        log.info("Received SQS message: {}", payload);
-        ingestService.ingestFromSqs(payload);
+    /**
+     * @return the Records of an S3 event notification (empty for the S3 test event),
+     *         or null when the body is an order payload
+     */
+    private JsonNode s3EventRecords(String body) {
+        String trimmed = body.trim();
+        if (!trimmed.startsWith("{")) return null;
+        try {
+            JsonNode root = objectMapper.readTree(trimmed);
+            if ("s3:TestEvent".equals(root.path("Event").asText())) {
+                return objectMapper.createArrayNode();
+            }
+            JsonNode records = root.path("Records");
+            if (records.isArray() && records.size() > 0
+                    && "aws:s3".equals(records.get(0).path("eventSource").asText())) {
+                return records;
+            }
+        } catch (IOException e) {
+            log.debug("SQS body is not JSON, treating it as a payload");
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,22 @@
 package com.dftp.Service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+
+import com.dftp.Entity.OutboxEventEntity;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,36 +32,8 @@ public class StatusTrackingService {
 
     public String sendStatusMessage(UUID rawOrderId, String source, String status) {
         try {
-            Map<String, String> payload = new HashMap<>();
-            
-            // Determine identifier based on source
-            if ("MQ".equalsIgnoreCase(source)) {
-                payload.put("orderId", rawOrderId.toString());
-            } else if ("S3".equalsIgnoreCase(source)) {
-                payload.put("fileId", rawOrderId.toString());
-            }
-            
-            payload.put("sourceservice", "trade-capture");
-            payload.put("status", status);
-
-            // Convert payload to JSON string
-            String payloadJson = "{";
-            boolean first = true;
-            for (Map.Entry<String, String> entry : payload.entrySet()) {
-                if (!first) payloadJson += ",";
-                payloadJson += "\"" + entry.getKey() + "\":\"" + entry.getValue() + "\"";
-                first = false;
-            }
-            payloadJson += "}";
-
-            Map<String, String> streamData = new HashMap<>();
-            streamData.put("payload", payloadJson);
-
-            RecordId recordId = redisTemplate.opsForStream().add(
-                StreamRecords.newRecord()
-                    .in(streamKey)
-                    .ofMap(streamData)
-            );
+            String payloadJson = statusPayload(rawOrderId, source, status);
+            RecordId recordId = redisTemplate.opsForStream().add(statusRecord(payloadJson));
 
             log.info("Sent status message to Redis stream: {} with recordId: {}", payloadJson, recordId.getValue());
             return recordId.getValue();
@@ -63,4 +43,64 @@ public class StatusTrackingService {
             throw new RuntimeException("Failed to send status message", e);
         }
     }
+
+    /**
+     * Sends one status per event as a single pipelined batch of XADDs, so the
+     * whole batch costs one Redis round trip. Either all commands are sent or
+     * the call throws.
+     */
+    public void sendStatusMessages(List<OutboxEventEntity> events, String status) {
+        if (events.isEmpty()) return;
+        try {
+            List<Object> ids = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    StreamOperations<String, String, String> streams = operations.opsForStream();
+                    for (OutboxEventEntity evt : events) {
+                        streams.add(statusRecord(statusPayload(evt.getRawOrderId(), evt.getSource(), status)));
+                    }
+                    return null;
+                }
+            });
+            log.info("Sent {} '{}' status messages to Redis stream {}", ids.size(), status, streamKey);
+        } catch (Exception e) {
+            log.error("Failed to send {} status messages to Redis: {}", events.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to send status messages", e);
+        }
+    }
+
+    private MapRecord<String, String, String> statusRecord(String payloadJson) {
+        Map<String, String> streamData = new HashMap<>();
+        streamData.put("payload", payloadJson);
+        return StreamRecords.newRecord()
+                .in(streamKey)
+                .ofMap(streamData);
+    }
+
+    // package-private for the JMH benchmarks
+    String statusPayload(UUID rawOrderId, String source, String status) {
+        Map<String, String> payload = new HashMap<>();
+        
+        // Determine identifier based on source
+        if ("MQ".equalsIgnoreCase(source)) {
+            payload.put("orderId", rawOrderId.toString());
+        } else if ("S3".equalsIgnoreCase(source)) {
+            payload.put("fileId", rawOrderId.toString());
+        }
+        
+        payload.put("sourceservice", "trade-capture");
+        payload.put("status", status);
+
+        // Convert payload to JSON string
+        String payloadJson = "{";
+        boolean first = true;
+        for (Map.Entry<String, String> entry : payload.entrySet()) {
+            if (!first) payloadJson += ",";
+            payloadJson += "\"" + entry.getKey() + "\":\"" + entry.getValue() + "\"";
+            first = false;
+        }
+        payloadJson += "}";
+        return payloadJson;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,4 @@
+-- Serves the checksum IN queries the dedup index sends for Bloom-filter
+-- positives, and the findByChecksum lookup. On a large, busy raw_orders table
+-- build it with CREATE INDEX CONCURRENTLY, outside a transaction, instead.
+CREATE INDEX IF NOT EXISTS idx_raw_orders_checksum ON raw_orders (checksum);
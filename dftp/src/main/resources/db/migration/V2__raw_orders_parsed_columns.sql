@@ -0,0 +1,13 @@
+-- Typed columns decoded from the fixed-width order record (OrderRecordParser).
+-- All nullable: a record that matches no layout is stored with the payload only.
+ALTER TABLE raw_orders
+    ADD COLUMN IF NOT EXISTS layout_version varchar(255),
+    ADD COLUMN IF NOT EXISTS firm_number integer,
+    ADD COLUMN IF NOT EXISTS fund_number integer,
+    ADD COLUMN IF NOT EXISTS side char(1),
+    ADD COLUMN IF NOT EXISTS txn_id varchar(255),
+    ADD COLUMN IF NOT EXISTS amount bigint,
+    ADD COLUMN IF NOT EXISTS trade_time timestamp(6);
+
+-- Queries by firm over a trading window.
+CREATE INDEX IF NOT EXISTS idx_raw_orders_firm_trade_time ON raw_orders (firm_number, trade_time);
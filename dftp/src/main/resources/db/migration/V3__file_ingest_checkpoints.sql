@@ -0,0 +1,17 @@
+-- Progress of S3 file ingest (FileIngestCheckpointEntity), one row per
+-- bucket/key@eTag. byte_offset and record_count commit together with the
+-- records before them; version is the JPA @Version column.
+CREATE TABLE IF NOT EXISTS file_ingest_checkpoints (
+    id            varchar(2048) PRIMARY KEY,
+    bucket        varchar(255),
+    object_key    varchar(1024),
+    e_tag         varchar(255),
+    file_size     bigint,
+    byte_offset   bigint NOT NULL DEFAULT 0,
+    record_count  bigint NOT NULL DEFAULT 0,
+    status        varchar(32),
+    file_checksum varchar(64),
+    started_at    timestamp(6) with time zone,
+    updated_at    timestamp(6) with time zone,
+    version       bigint
+);
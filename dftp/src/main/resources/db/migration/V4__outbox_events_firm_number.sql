@@ -0,0 +1,9 @@
+-- Ordering key of the outbox relay (outbox.ordering-key-column=firm_number):
+-- events of one firm are published in created_at order and share a
+-- JMSXGroupID. NULL for orders whose record could not be parsed.
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS firm_number integer;
+
+-- The claim keeps a firm's later rows back while an earlier one waits for a
+-- retry; that NOT EXISTS probe looks up pending rows of the same firm.
+CREATE INDEX IF NOT EXISTS idx_outbox_events_pending_firm ON outbox_events (firm_number)
+    WHERE status = 'PENDING';
@@ -0,0 +1,8 @@
+-- Retry tracking of the outbox relay (outbox.max-attempts > 0), mapped on
+-- OutboxEventEntity: failed publishes are counted, the next attempt is
+-- scheduled with backoff and the last error kept. Same DDL as
+-- GenericOutboxRepository.retryColumnsDdl().
+ALTER TABLE outbox_events
+    ADD COLUMN IF NOT EXISTS attempts integer NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS next_attempt_at timestamp(6) with time zone,
+    ADD COLUMN IF NOT EXISTS last_error text;
@@ -0,0 +1,13 @@
+-- The dedup Bloom filter is per JVM: a checksum stored by another replica, or
+-- by the S3 path of another instance, is a filter negative here. The unique
+-- index is what rejects such a duplicate; OrderIngestService turns the
+-- violation into a duplicate rejection. It serves the checksum lookups too,
+-- so it replaces the plain index from V1.
+--
+-- Fails while raw_orders still holds duplicate checksums. List them with
+--   SELECT checksum, count(*) FROM raw_orders GROUP BY checksum HAVING count(*) > 1;
+-- and delete the extra rows (and their outbox_events) first. On a large, busy
+-- table build it with CREATE UNIQUE INDEX CONCURRENTLY, outside a transaction.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_raw_orders_checksum ON raw_orders (checksum);
+
+DROP INDEX IF EXISTS idx_raw_orders_checksum;
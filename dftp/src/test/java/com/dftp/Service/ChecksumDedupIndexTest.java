@@ -0,0 +1,70 @@
+package com.dftp.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.dftp.Repository.RawOrderRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A Bloom negative skips the database until an insert of the checksum hits
+ * the unique index, i.e. another instance stored it behind this filter's back.
+ */
+class ChecksumDedupIndexTest {
+
+    private final RawOrderRepository repository = mock(RawOrderRepository.class);
+    private ChecksumDedupIndex index;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.count()).thenReturn(1L);
+        when(repository.streamAllChecksums()).thenReturn(Stream.of("stored-here"));
+        // the database also holds a row another replica stored
+        when(repository.findExistingChecksums(anyCollection())).thenAnswer(invocation -> invocation
+                .<Collection<String>>getArgument(0).stream()
+                .filter(c -> c.startsWith("stored"))
+                .toList());
+
+        index = new ChecksumDedupIndex(repository, transactionManager, true, 0.001, 1000, 2.0, 100,
+                new SimpleMeterRegistry());
+        index.rebuild();
+    }
+
+    @Test
+    void bloomNegativeSkipsTheDatabase() {
+        assertThat(index.findExisting(List.of("stored-elsewhere", "new"))).isEmpty();
+
+        verify(repository, never()).findExistingChecksums(anyCollection());
+    }
+
+    @Test
+    void conflictSendsTheNextLookupToTheDatabase() {
+        index.recordConflict(List.of("stored-elsewhere", "new"));
+
+        assertThat(index.findExisting(List.of("stored-elsewhere", "new"))).containsExactly("stored-elsewhere");
+        verify(repository).findExistingChecksums(List.of("stored-elsewhere", "new"));
+
+        // now known without a query
+        assertThat(index.isDuplicate("stored-elsewhere")).isTrue();
+        assertThat(index.findExisting(Set.of("new"))).isEmpty();
+        verify(repository).findExistingChecksums(anyCollection());
+    }
+}
@@ -0,0 +1,129 @@
+package com.dftp.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * In-process S3 stand-in for GetObject: honours {@code Range: bytes=a-} and
+ * {@code bytes=a-b}, answers a stale {@code If-Match} with 412 like S3 does,
+ * and can cut the next response stream after a number of bytes to simulate a
+ * dropped connection. Every request is recorded.
+ */
+class InMemoryS3Client implements S3Client {
+
+    private record StoredObject(byte[] content, String eTag) {
+    }
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final List<GetObjectRequest> requests = new CopyOnWriteArrayList<>();
+    private volatile long failNextReadAfter = -1;
+
+    /** Store (or replace) an object; returns its new eTag. */
+    String putObject(String bucket, String key, byte[] content) {
+        String eTag = "\"" + md5(content) + "\"";
+        objects.put(bucket + "/" + key, new StoredObject(content, eTag));
+        return eTag;
+    }
+
+    /** The next GetObject response fails with an IOException once this many bytes were read. */
+    void failNextReadAfter(long bytes) {
+        failNextReadAfter = bytes;
+    }
+
+    List<GetObjectRequest> requests() {
+        return requests;
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        requests.add(request);
+        StoredObject object = objects.get(request.bucket() + "/" + request.key());
+        if (object == null) {
+            throw NoSuchKeyException.builder().statusCode(404).message("The specified key does not exist.").build();
+        }
+        if (request.ifMatch() != null && !request.ifMatch().equals(object.eTag())) {
+            throw S3Exception.builder().statusCode(412)
+                    .message("At least one of the pre-conditions you specified did not hold").build();
+        }
+
+        int length = object.content().length;
+        int from = 0;
+        int to = length - 1;
+        if (request.range() != null) {
+            String[] bounds = request.range().substring("bytes=".length()).split("-", -1);
+            from = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) to = Math.min(to, Integer.parseInt(bounds[1]));
+        }
+        InputStream body = new ByteArrayInputStream(object.content(), from, to - from + 1);
+        long failAfter = failNextReadAfter;
+        failNextReadAfter = -1;
+        if (failAfter >= 0) body = new DroppingInputStream(body, failAfter);
+
+        GetObjectResponse response = GetObjectResponse.builder()
+                .eTag(object.eTag())
+                .contentLength((long) (to - from + 1))
+                .contentRange(request.range() != null ? "bytes " + from + "-" + to + "/" + length : null)
+                .build();
+        return new ResponseInputStream<>(response, AbortableInputStream.create(body));
+    }
+
+    @Override
+    public String serviceName() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Delivers {@code limit} bytes, then fails like a reset connection. */
+    private static final class DroppingInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        DroppingInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) throw new IOException("Connection reset");
+            remaining--;
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) throw new IOException("Connection reset");
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.dftp.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Which write-ahead log positions {@link InboundBatchProcessor} releases:
+ * committed and duplicate messages let the cursor move on, a message whose
+ * ingest keeps failing is still in the log after a restart.
+ */
+class InboundBatchProcessorTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path walDirectory;
+
+    private final OrderIngestService ingestService = mock(OrderIngestService.class);
+    // payload -> failures left before its ingest succeeds
+    private final Map<String, AtomicInteger> failuresLeft = new ConcurrentHashMap<>();
+    private final List<InboundWriteAheadLog> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            String payload = invocation.getArgument(0);
+            if (payload.startsWith("dup")) throw new DuplicateOrderException("c0ffee");
+            AtomicInteger failures = failuresLeft.get(payload);
+            if (failures != null && failures.getAndDecrement() > 0) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            return null;
+        }).when(ingestService).ingestFromMq(anyString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (InboundWriteAheadLog wal : opened) wal.close();
+    }
+
+    @Test
+    void failedIngestIsReplayedAfterRestart() throws IOException {
+        failuresLeft.put("broken", new AtomicInteger(Integer.MAX_VALUE));
+        InboundWriteAheadLog wal = openWal(queue());
+        startAndAwaitReplay(wal);
+        InboundBatchProcessor processor = processor(wal);
+
+        processor.process(List.of(wal.append("ok"), wal.append("dup"), wal.append("broken")));
+        restart(wal);
+
+        SafeInboundQueue replayQueue = queue();
+        startAndAwaitReplay(openWal(replayQueue));
+        assertThat(drain(replayQueue)).containsExactly("broken");
+        // the first try plus two retries
+        verify(ingestService, times(3)).ingestFromMq("broken");
+    }
+
+    @Test
+    void committedAndDuplicateMessagesAreNotReplayed() throws IOException {
+        failuresLeft.put("flaky", new AtomicInteger(1));
+        InboundWriteAheadLog wal = openWal(queue());
+        startAndAwaitReplay(wal);
+        InboundBatchProcessor processor = processor(wal);
+
+        processor.process(List.of(wal.append("flaky"), wal.append("dup"), wal.append("ok")));
+        restart(wal);
+
+        SafeInboundQueue replayQueue = queue();
+        startAndAwaitReplay(openWal(replayQueue));
+        assertThat(drain(replayQueue)).isEmpty();
+        verify(ingestService, times(2)).ingestFromMq("flaky");
+        verify(ingestService, times(1)).ingestFromMq("dup");
+    }
+
+    private InboundBatchProcessor processor(InboundWriteAheadLog wal) {
+        InboundBatchProcessor processor = new InboundBatchProcessor(ingestService,
+                new IngestConcurrencyLimiter(1, new SimpleMeterRegistry()), wal);
+        ReflectionTestUtils.setField(processor, "retryAttempts", 2);
+        ReflectionTestUtils.setField(processor, "retryBackoffMs", 1L);
+        return processor;
+    }
+
+    private InboundWriteAheadLog openWal(SafeInboundQueue queue) throws IOException {
+        InboundWriteAheadLog wal = new InboundWriteAheadLog(true, walDirectory.toString(), SEGMENT_BYTES, 2,
+                queue, new SimpleMeterRegistry());
+        opened.add(wal);
+        return wal;
+    }
+
+    private void restart(InboundWriteAheadLog wal) throws IOException {
+        wal.checkpoint();
+        wal.close();
+        opened.remove(wal);
+    }
+
+    /** An append waits for startup replay to finish; the probe is released straight away. */
+    private static void startAndAwaitReplay(InboundWriteAheadLog wal) {
+        wal.start();
+        wal.release(List.of(wal.append("probe")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private SafeInboundQueue queue() throws IOException {
+        return new SafeInboundQueue(100, 80, 20, SafeInboundQueue.OverflowMode.PAUSE,
+                walDirectory.resolve("spill").toString(), mock(ObjectProvider.class), new SimpleMeterRegistry());
+    }
+
+    private static List<String> drain(SafeInboundQueue queue) {
+        List<String> payloads = new ArrayList<>();
+        InboundMessage msg;
+        while ((msg = queue.poll()) != null) payloads.add(msg.payload());
+        return payloads;
+    }
+}
@@ -0,0 +1,288 @@
+package com.dftp.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.dftp.Entity.FileIngestCheckpointEntity;
+import com.dftp.Repository.FileIngestCheckpointRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * File ingest against {@link InMemoryS3Client}: records come out exactly once
+ * and in order across failures, redeliveries resume at the committed offset
+ * with a Range GET, and a re-uploaded object is ingested as a new file.
+ */
+class S3FileIngestServiceTest {
+
+    private static final String BUCKET = "simulator-bucket";
+    private static final String KEY = "incoming/OrderFile4.txt";
+    private static final int BATCH_SIZE = 100;
+
+    private final InMemoryS3Client s3 = new InMemoryS3Client();
+    private final Map<String, FileIngestCheckpointEntity> checkpoints = new HashMap<>();
+    private final List<String> ingested = new ArrayList<>();
+    private int failIngestAtBatch = -1;
+    private int duringBatch = -1;
+    private Runnable onBatch;
+    private int ingestCalls;
+
+    private S3FileIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        OrderIngestService ingestService = mock(OrderIngestService.class);
+        doAnswer(invocation -> {
+            if (++ingestCalls == failIngestAtBatch) throw new IllegalStateException("database down");
+            if (ingestCalls == duringBatch) onBatch.run();
+            List<String> batch = invocation.getArgument(0);
+            ingested.addAll(batch);
+            return batch.size();
+        }).when(ingestService).ingestBatch(anyList(), anyString(), anyString(), anyLong());
+
+        // stores copies, so a checkpoint only changes when the service saves it, and checks
+        // the version on save, as with a real table
+        FileIngestCheckpointRepository repository = mock(FileIngestCheckpointRepository.class);
+        when(repository.insertIfAbsent(anyString(), anyString(), anyString(), anyString(), any(), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    String id = invocation.getArgument(0);
+                    if (checkpoints.containsKey(id)) return 0;
+                    Instant now = invocation.getArgument(6);
+                    checkpoints.put(id, new FileIngestCheckpointEntity(id, invocation.getArgument(1),
+                            invocation.getArgument(2), invocation.getArgument(3), invocation.getArgument(4), 0, 0,
+                            invocation.getArgument(5), null, now, now, 0L));
+                    return 1;
+                });
+        when(repository.findForUpdate(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0)))
+                        .map(S3FileIngestServiceTest::copy));
+        when(repository.save(any(FileIngestCheckpointEntity.class)))
+                .thenAnswer(invocation -> store(invocation.getArgument(0)));
+        when(repository.saveAndFlush(any(FileIngestCheckpointEntity.class)))
+                .thenAnswer(invocation -> store(invocation.getArgument(0)));
+
+        service = new S3FileIngestService(s3, ingestService, repository, new NoOpTransactionManager(),
+                new IngestConcurrencyLimiter(2, new SimpleMeterRegistry()), BATCH_SIZE);
+    }
+
+    @Test
+    void ingestsEveryRecordOnceWithFileChecksum() throws IOException {
+        byte[] file = orderFile(250);
+        String eTag = s3.putObject(BUCKET, KEY, file);
+
+        service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+
+        assertThat(ingested).containsExactlyElementsOf(records(250));
+        FileIngestCheckpointEntity checkpoint = checkpoint(eTag);
+        assertThat(checkpoint.getStatus()).isEqualTo(S3FileIngestService.STATUS_COMPLETED);
+        assertThat(checkpoint.getRecordCount()).isEqualTo(250);
+        assertThat(checkpoint.getByteOffset()).isEqualTo(file.length);
+        assertThat(checkpoint.getFileChecksum()).isEqualTo(sha256(file));
+        assertThat(s3.requests()).singleElement().satisfies(request -> {
+            assertThat(request.range()).isNull();
+            assertThat(request.ifMatch()).isEqualTo(eTag);
+        });
+    }
+
+    @Test
+    void redeliveryResumesFromCheckpointAfterFailedBatch() throws IOException {
+        byte[] file = orderFile(450);
+        String eTag = s3.putObject(BUCKET, KEY, file);
+        failIngestAtBatch = 3;
+
+        assertThatThrownBy(() -> service.ingestObject(BUCKET, KEY, (long) file.length, eTag))
+                .hasMessageContaining("database down");
+        FileIngestCheckpointEntity partial = checkpoint(eTag);
+        assertThat(partial.getStatus()).isEqualTo(S3FileIngestService.STATUS_IN_PROGRESS);
+        assertThat(partial.getRecordCount()).isEqualTo(200);
+        assertThat(ingested).hasSize(200);
+
+        s3.requests().clear();
+        service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+
+        assertThat(ingested).containsExactlyElementsOf(records(450));
+        assertThat(checkpoint(eTag).getFileChecksum()).isEqualTo(sha256(file));
+        // the already ingested prefix is only re-hashed, the rest read from the checkpoint on
+        assertThat(s3.requests()).extracting(GetObjectRequest::range)
+                .containsExactly("bytes=0-" + (partial.getByteOffset() - 1), "bytes=" + partial.getByteOffset() + "-");
+    }
+
+    @Test
+    void droppedStreamResumesWithRangeRequest() throws IOException {
+        // larger than the reader's 64 KiB buffer, so batches commit before the drop
+        byte[] file = orderFile(3000);
+        String eTag = s3.putObject(BUCKET, KEY, file);
+        s3.failNextReadAfter(150_000);
+
+        assertThatThrownBy(() -> service.ingestObject(BUCKET, KEY, (long) file.length, eTag))
+                .isInstanceOf(IOException.class);
+        long offset = checkpoint(eTag).getByteOffset();
+        assertThat(offset).isPositive().isLessThan(150_000);
+        assertThat(ingested).hasSize((int) checkpoint(eTag).getRecordCount());
+
+        s3.requests().clear();
+        service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+
+        assertThat(ingested).containsExactlyElementsOf(records(3000));
+        assertThat(s3.requests()).extracting(GetObjectRequest::range).last().isEqualTo("bytes=" + offset + "-");
+        assertThat(checkpoint(eTag).getFileChecksum()).isEqualTo(sha256(file));
+    }
+
+    @Test
+    void completedFileIsSkippedOnRedelivery() throws IOException {
+        byte[] file = orderFile(10);
+        String eTag = s3.putObject(BUCKET, KEY, file);
+        service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+        s3.requests().clear();
+
+        service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+
+        assertThat(ingested).hasSize(10);
+        assertThat(s3.requests()).isEmpty();
+    }
+
+    @Test
+    void reuploadedFileIsANewIngestAndStaleETagIsRejected() throws IOException {
+        byte[] first = orderFile(150);
+        String firstETag = s3.putObject(BUCKET, KEY, first);
+        failIngestAtBatch = 2;
+        assertThatThrownBy(() -> service.ingestObject(BUCKET, KEY, (long) first.length, firstETag))
+                .hasMessageContaining("database down");
+
+        byte[] second = orderFile(120, "R");
+        String secondETag = s3.putObject(BUCKET, KEY, second);
+        ingested.clear();
+        s3.requests().clear();
+
+        // the old notification must not resume against the new content
+        assertThatThrownBy(() -> service.ingestObject(BUCKET, KEY, (long) first.length, firstETag))
+                .isInstanceOfSatisfying(S3Exception.class, e -> assertThat(e.statusCode()).isEqualTo(412));
+        assertThat(ingested).isEmpty();
+
+        service.ingestObject(BUCKET, KEY, (long) second.length, secondETag);
+
+        assertThat(ingested).containsExactlyElementsOf(records(120, "R"));
+        assertThat(s3.requests()).last().satisfies(request -> assertThat(request.range()).isNull());
+        assertThat(checkpoint(secondETag).getFileChecksum()).isEqualTo(sha256(second));
+        assertThat(checkpoint(firstETag).getStatus()).isEqualTo(S3FileIngestService.STATUS_IN_PROGRESS);
+    }
+
+    @Test
+    void redeliveryTakesOverAndTheEarlierRunStops() throws IOException {
+        byte[] file = orderFile(450);
+        String eTag = s3.putObject(BUCKET, KEY, file);
+        // the object is redelivered to another consumer while the first one streams it;
+        // the limiter has a slot for each
+        duringBatch = 2;
+        onBatch = () -> {
+            try {
+                service.ingestObject(BUCKET, KEY, (long) file.length, eTag);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        assertThatThrownBy(() -> service.ingestObject(BUCKET, KEY, (long) file.length, eTag))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        FileIngestCheckpointEntity checkpoint = checkpoint(eTag);
+        assertThat(checkpoint.getStatus()).isEqualTo(S3FileIngestService.STATUS_COMPLETED);
+        assertThat(checkpoint.getRecordCount()).isEqualTo(450);
+        assertThat(checkpoint.getFileChecksum()).isEqualTo(sha256(file));
+    }
+
+    /** Saves a copy if the entity carries the stored version, like Hibernate's optimistic check. */
+    private FileIngestCheckpointEntity store(FileIngestCheckpointEntity checkpoint) {
+        FileIngestCheckpointEntity stored = checkpoints.get(checkpoint.getId());
+        if (stored != null && !stored.getVersion().equals(checkpoint.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(FileIngestCheckpointEntity.class, checkpoint.getId());
+        }
+        checkpoint.setVersion(checkpoint.getVersion() == null ? 0 : checkpoint.getVersion() + 1);
+        checkpoints.put(checkpoint.getId(), copy(checkpoint));
+        return checkpoint;
+    }
+
+    private FileIngestCheckpointEntity checkpoint(String eTag) {
+        return checkpoints.get(BUCKET + "/" + KEY + "@" + eTag);
+    }
+
+    private static byte[] orderFile(int count) {
+        return orderFile(count, "O");
+    }
+
+    private static byte[] orderFile(int count, String prefix) {
+        return (String.join("\n", records(count, prefix)) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> records(int count) {
+        return records(count, "O");
+    }
+
+    /** Fixed-width lines of roughly order-record size. */
+    private static List<String> records(int count, String prefix) {
+        List<String> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(String.format("%s%08d%s", prefix, i, "X".repeat(91)));
+        }
+        return records;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileIngestCheckpointEntity copy(FileIngestCheckpointEntity c) {
+        return new FileIngestCheckpointEntity(c.getId(), c.getBucket(), c.getObjectKey(), c.getETag(),
+                c.getFileSize(), c.getByteOffset(), c.getRecordCount(), c.getStatus(), c.getFileChecksum(),
+                c.getStartedAt(), c.getUpdatedAt(), c.getVersion());
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}